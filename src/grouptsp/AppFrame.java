@@ -18,7 +18,6 @@ import javax.swing.JScrollPane;
 import javax.swing.JSpinner;
 import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
-import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -30,13 +29,13 @@ public class AppFrame extends JFrame
      */
 
     private static final int
-        OPTIMIZE_STEPS = 1000,
         NUM_TOURS      = 3,
         NUM_CITIES     = 50,
         MAP_WIDTH      = 100,
-        MAP_HEIGHT     = 100;
+        MAP_HEIGHT     = 100,
+        MAX_CITIES     = 10000;   // Damit die Anzeige flüssig bleibt
 
-    // Farben fr Graphen (mit Transparenz)
+    // Farben für Graphen (mit Transparenz)
     private static final Color[] GRAPH_COLOR = {
         new Color(0, 0, 1, .8f),
         new Color(1, 0, 0, .8f),
@@ -52,6 +51,7 @@ public class AppFrame extends JFrame
      */
 
     private TSProblem tsp;
+    private Solver    solver;
 
     /*
      * Komponenten
@@ -80,7 +80,9 @@ public class AppFrame extends JFrame
      * Sonstige Felder
      */
 
-    private Timer optimizeTimer;
+    // GUI wird gerade aus einem Snapshot aktualisiert
+    private boolean updating;
+    private int     plotSteps;
 
     /*
      * Konstruktor
@@ -94,10 +96,8 @@ public class AppFrame extends JFrame
 
         tsp = new TSProblem(NUM_TOURS, NUM_CITIES,
                              MAP_WIDTH, MAP_HEIGHT);
-        tsp.addChangeListener(this);
-
-        optimizeTimer = new Timer(0, this);
-        optimizeTimer.setCoalesce(true);
+        solver = new Solver(tsp);
+        solver.addChangeListener(this);
 
         setContentPane(createContentPane());
 
@@ -117,7 +117,7 @@ public class AppFrame extends JFrame
         panel.setLayout(new GridBagLayout());
 
         // Karte
-        tspMap = new TSPMap(tsp);
+        tspMap = new TSPMap(solver);
         panel.add(tspMap, Util.newGBC_B(0,0,1,2,5,5,5,5,1,1));
 
         // Erstellen
@@ -141,11 +141,11 @@ public class AppFrame extends JFrame
                                        Resources.getMessage("LABEL_NUMTOURS")); //$NON-NLS-1$
         group.add(toursSpinner, Util.newGBC_B(1,0,1,1,0,0,5,5,1,0));
 
-        // Stdte
+        // Städte
         group.add(new JLabel(Resources.getMessage("LABEL_NUMCITIES")), //$NON-NLS-1$
         		             Util.newGBC_B(0,1,1,1,0,5,5,5,0,0)); //$NON-NLS-1$
 
-        citiesSpinner = Util.newSpinner(tsp.getNumCities(), 1, 300, 1, null,
+        citiesSpinner = Util.newSpinner(tsp.getNumCities(), 1, MAX_CITIES, 1, null,
                                         Resources.getMessage("TOOLTIP_NUMCITIES")); //$NON-NLS-1$
         group.add(citiesSpinner, Util.newGBC_B(1,1,1,1,0,0,5,5,1,0));
 
@@ -157,7 +157,7 @@ public class AppFrame extends JFrame
                                        this, Resources.getMessage("TOOLTIP_MAPWIDTH")); //$NON-NLS-1$
         group.add(widthSpinner, Util.newGBC_B(1,2,1,1,0,0,5,5,1,0));
 
-        // Hhe
+        // Höhe
         group.add(new JLabel(Resources.getMessage("LABEL_MAPHEIGHT")), //$NON-NLS-1$
         		             Util.newGBC_B(0,3,1,1,0,5,5,5,0,0)); //$NON-NLS-1$
 
@@ -171,7 +171,7 @@ public class AppFrame extends JFrame
                                       Resources.ICON_NEWMAP, this);
         group.add(createButton, Util.newGBC_H(0,4,2,1,0,5,5,5,1));
 
-        // Button "Zufllige Rundreisen"
+        // Button "Zufällige Rundreisen"
         randomizeButton = Util.newButton(Resources.getMessage("BUTTON_RANDMAP"), //$NON-NLS-1$
                                          Resources.getMessage("TOOLTIP_RANDMAP"), //$NON-NLS-1$
                                          Resources.ICON_RANDMAP, this);
@@ -196,7 +196,7 @@ public class AppFrame extends JFrame
                             this, Resources.getMessage("TOOLTIP_TEMPERATURE")); //$NON-NLS-1$
         group.add(temperatureSpinner, Util.newGBC_B(1,0,1,1,0,0,5,5,1,0));
 
-        // Abkhlungsrate
+        // Abkühlungsrate
         group.add(new JLabel(Resources.getMessage("LABEL_COOLINGRATE")), //$NON-NLS-1$
             Util.newGBC_B(0,1,1,1,0,5,5,5,0,0));
 
@@ -214,7 +214,7 @@ public class AppFrame extends JFrame
         group.add(stepsLabel, Util.newGBC_B(1,2,1,1,0,0,5,5,1,0));
 
         // Parameter-Tabelle
-        paramTable = new TSPParamTable(tsp, GRAPH_COLOR);
+        paramTable = new TSPParamTable(solver, GRAPH_COLOR);
         group.add(paramTable, Util.newGBC_H(0,3,2,1,0,5,5,5,1));
 
         // Button "Optimieren"
@@ -248,23 +248,50 @@ public class AppFrame extends JFrame
         if (Util.isDebugEnabled())
             System.out.println(e);
 
-        // HRGProblem aktualisieren
+        // HRGProblem aktualisieren (im Löser-Thread, falls er läuft)
         if (e.getSource() == temperatureSpinner) {
-            Float temperature = (Float)temperatureSpinner.getValue();
-            tsp.setTemperature(temperature.floatValue());
+            if (updating)
+                return;
+            final float temperature =
+                ((Float)temperatureSpinner.getValue()).floatValue();
+            solver.invoke(new Runnable() {
+                public void run() {
+                    tsp.setTemperature(temperature);
+                }
+            });
         } else if (e.getSource() == coolingRateSpinner) {
-            Float coolingRate = (Float)coolingRateSpinner.getValue();
-            tsp.setCoolingRate(coolingRate.floatValue());
-        } else if (e.getSource() == tsp) {
-            // GUI aktualisieren
-            temperatureSpinner.setValue(new Float(tsp.getTemperature()));
-            coolingRateSpinner.setValue(new Float(tsp.getCoolingRate()));
-            stepsLabel.setText(String.valueOf(tsp.getNumSteps()));
+            if (updating)
+                return;
+            final float coolingRate =
+                ((Float)coolingRateSpinner.getValue()).floatValue();
+            solver.invoke(new Runnable() {
+                public void run() {
+                    tsp.setCoolingRate(coolingRate);
+                }
+            });
+        } else if (e.getSource() == solver) {
+            // GUI aus dem Snapshot aktualisieren
+            Snapshot snapshot = solver.getSnapshot();
+            updating = true;
+            temperatureSpinner.setValue(new Float(snapshot.getTemperature()));
+            coolingRateSpinner.setValue(new Float(snapshot.getCoolingRate()));
+            updating = false;
+            stepsLabel.setText(String.valueOf(snapshot.getNumSteps()));
+
+            // Neuer Punkt im Graphen, wenn optimiert wurde
+            if (snapshot.getNumSteps() > plotSteps) {
+                float[] row = new float[snapshot.getNumParameters()];
+                for (int i = 0; i < row.length; ++i)
+                    row[i] = snapshot.getValue(i);
+                graph.addPlotValues(row);
+                //graph.addPlotValue(2, snapshot.getTemperature());
+            }
+            plotSteps = snapshot.getNumSteps();
         } else if (e.getSource() == widthSpinner || e.getSource() == heightSpinner)  {
         	int maxValue = ((Integer)widthSpinner.getValue()).intValue() *
 			               ((Integer)heightSpinner.getValue()).intValue();
         	((SpinnerNumberModel)citiesSpinner.getModel()).setMaximum(
-        		new Integer(Math.min(maxValue, 300)));    
+        		new Integer(Math.min(maxValue, MAX_CITIES)));    
         }
         //Number of cities spinner setMaximum(width*height)
     }
@@ -285,28 +312,22 @@ public class AppFrame extends JFrame
                      ((Integer)heightSpinner.getValue()).intValue());
             graph.resetPlots();
         } else if (e.getSource() == randomizeButton)
-            // Zufllige Rundreisen setzen
+            // Zufällige Rundreisen setzen
             tsp.randomize();
         else if (e.getSource() == optimizeButton) {
             // Optimierung starten oder anhalten
-            boolean optimizing = optimizeTimer.isRunning();
+            boolean optimizing = solver.isRunning();
             if (optimizing) {
-                optimizeTimer.stop();
+                solver.stop();
                 optimizeButton.setText(Resources.getMessage("BUTTON_OPTIMIZE")); //$NON-NLS-1$
                 optimizeButton.setIcon(Resources.ICON_OPTIMIZE);
             } else {
-                optimizeTimer.start();
+                solver.start(paramTable.getSelectedParameter());
                 optimizeButton.setText(Resources.getMessage("BUTTON_STOP")); //$NON-NLS-1$
                 optimizeButton.setIcon(Resources.ICON_STOP);
             }
             creatorGroup.setEnabled(optimizing);
             paramTable.setEnabled(optimizing);
-        } else if (e.getSource() == optimizeTimer) {
-            // Nchster Iterationsschritt
-            tsp.optimize(paramTable.getSelectedParameter(), OPTIMIZE_STEPS);
-            for (int i = 0; i < tsp.getNumParameters(); ++i)
-                graph.addPlotValue(i, tsp.getParameter(i).getValue());
-            //graph.addPlotValue(2, hrg.getTemperature());
         }
     }
 
@@ -0,0 +1,567 @@
+/*
+ * Batch.java - Hauptklasse für die Optimierung ohne Oberfläche
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.StringTokenizer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Klasse Batch
+ *
+ * Lädt oder erzeugt eine Karte, optimiert einen Parameter mit einem
+ * Schritt- oder Zeitbudget und gibt Ergebnis und Laufzeit aus.
+ * Es werden keine AWT- oder Swing-Oberflächenklassen geladen, deshalb
+ * läuft die Klasse auch auf Servern ohne Anzeige:
+ *
+ *   java -cp GTSP.jar grouptsp.Batch -cities 5000 -steps 1000000
+ */
+public class Batch {
+
+    /*
+     * Konstanten
+     */
+
+    private static final int CHUNK_STEPS = 1000;
+
+    private static final String USAGE =
+        "Aufruf: java -cp GTSP.jar grouptsp.Batch [Optionen]\n" +
+        "  -tours N         Anzahl der Rundreisen (3)\n" +
+        "  -cities N        Anzahl der Städte einer Zufallskarte (50)\n" +
+        "  -width N         Breite der Zufallskarte (100)\n" +
+        "  -height N        Höhe der Zufallskarte (100)\n" +
+        "  -distribution V  Zufallskarte: uniform, clustered oder roads (uniform)\n" +
+        "  -instance NAME   Standardkarte (uniform-1k ... uniform-1m, clustered-10k,\n" +
+        "                   clustered-100k, roads-10k, roads-100k)\n" +
+        "  -input DATEI     Städte laden (eine Zeile \"x y\" je Stadt)\n" +
+        "  -tsplib DATEI    TSPLIB-Karte laden (EUC_2D, CEIL_2D, ATT, GEO)\n" +
+        "  -matrix DATEI    Abstände aus einer Matrixdatei (siehe MappedMatrix)\n" +
+        "  -start V         Startlösung: random, sweep oder cluster (random)\n" +
+        "  -renumber        Städte entlang einer Hilbert-Kurve neu nummerieren\n" +
+        "  -param N         Index des optimierten Parameters (0)\n" +
+        "  -steps N         Schrittbudget\n" +
+        "  -time MS         Zeitbudget in Millisekunden\n" +
+        "  -temperature T   Anfangstemperatur (10 * Städte)\n" +
+        "  -cooling C       Abkühlungsrate (0.999)\n" +
+        "  -neighbors       Nur Schritte zu nahen Nachbarn\n" +
+        "  -moves W,W,...   Gewichte der Schritte (1,0,0 = nur Verschieben)\n" +
+        "  -replicas N      Parallel Tempering mit N Replikaten (1)\n" +
+        "  -tmin T          Kälteste Temperatur der Leiter (Anfangstemperatur / 10000)\n" +
+        "  -exchange N      Schritte je Replikat zwischen zwei Tauschrunden (1000)\n" +
+        "  -starts N        N unabhängige Neustarts, der beste gewinnt (1)\n" +
+        "  -improve         Touren am Ende mit 2-opt und Or-opt nachoptimieren\n" +
+        "  -seed S          Startwert für einen wiederholbaren Lauf\n" +
+        "  -output DATEI    Touren schreiben (eine Zeile je Tour)\n";
+
+    /*
+     * Einstellungen
+     */
+
+    private int     numTours = 3,
+                    numCities = 50,
+                    width = 100,
+                    height = 100,
+                    param = 0,
+                    numReplicas = 1,
+                    numStarts = 1,
+                    construction = Construction.RANDOM,
+                    distribution = CityGenerator.UNIFORM,
+                    exchangeSteps = CHUNK_STEPS;
+    private long    maxSteps = -1,
+                    maxTime = -1;
+    private float   temperature = -1,
+                    coolingRate = -1,
+                    minTemperature = -1;
+    private Long    seed;
+    private float   moveWeights[];
+    private boolean neighborMoves,
+                    renumber,
+                    improve;
+    private String  input, instance, tsplib, matrix, output;
+    private TsplibReader tsplibReader;
+
+    /*
+     * Main
+     */
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Batch batch = new Batch();
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            batch.run();
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /*
+     * Optionen einlesen
+     */
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.equals("-tours"))
+                numTours = parseInt(args, ++i, 1);
+            else if (arg.equals("-cities"))
+                numCities = parseInt(args, ++i, 1);
+            else if (arg.equals("-width"))
+                width = parseInt(args, ++i, 1);
+            else if (arg.equals("-height"))
+                height = parseInt(args, ++i, 1);
+            else if (arg.equals("-distribution"))
+                distribution = parseDistribution(args, ++i);
+            else if (arg.equals("-instance"))
+                instance = value(args, ++i);
+            else if (arg.equals("-tsplib"))
+                tsplib = value(args, ++i);
+            else if (arg.equals("-matrix"))
+                matrix = value(args, ++i);
+            else if (arg.equals("-input"))
+                input = value(args, ++i);
+            else if (arg.equals("-start"))
+                construction = parseConstruction(args, ++i);
+            else if (arg.equals("-renumber"))
+                renumber = true;
+            else if (arg.equals("-param"))
+                param = parseInt(args, ++i, 0);
+            else if (arg.equals("-steps"))
+                maxSteps = parseLong(args, ++i, 0);
+            else if (arg.equals("-time"))
+                maxTime = parseInt(args, ++i, 0);
+            else if (arg.equals("-temperature"))
+                temperature = parseFloat(args, ++i);
+            else if (arg.equals("-cooling"))
+                coolingRate = parseFloat(args, ++i);
+            else if (arg.equals("-neighbors"))
+                neighborMoves = true;
+            else if (arg.equals("-replicas"))
+                numReplicas = parseInt(args, ++i, 1);
+            else if (arg.equals("-tmin"))
+                minTemperature = parseFloat(args, ++i);
+            else if (arg.equals("-exchange"))
+                exchangeSteps = parseInt(args, ++i, 1);
+            else if (arg.equals("-starts"))
+                numStarts = parseInt(args, ++i, 1);
+            else if (arg.equals("-moves"))
+                moveWeights = parseFloats(args, ++i);
+            else if (arg.equals("-improve"))
+                improve = true;
+            else if (arg.equals("-seed"))
+                seed = parseLong(args, ++i);
+            else if (arg.equals("-output"))
+                output = value(args, ++i);
+            else
+                throw new IllegalArgumentException("Unbekannte Option: " + arg);
+        }
+        if ((input != null ? 1 : 0) + (instance != null ? 1 : 0) +
+            (tsplib != null ? 1 : 0) + (matrix != null ? 1 : 0) > 1)
+            throw new IllegalArgumentException("-input, -instance, -tsplib und -matrix schließen sich aus");
+        if (input == null && instance == null && tsplib == null && matrix == null &&
+            (long)width * height < numCities)
+            throw new IllegalArgumentException("Zu viele Städte für die Karte");
+        if (maxSteps < 0 && maxTime < 0)
+            maxSteps = 1000000;
+        if (numStarts > 1 && numReplicas > 1)
+            throw new IllegalArgumentException("-starts und -replicas schließen sich aus");
+        if (numStarts > 1 && (maxTime >= 0 || maxSteps > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("-starts braucht ein Schrittbudget bis " +
+                                               Integer.MAX_VALUE);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Wert fehlt: " + args[i - 1]);
+        return args[i];
+    }
+
+    private static int parseConstruction(String[] args, int i) {
+        int c = Construction.forName(value(args, i));
+        if (c < 0)
+            throw new IllegalArgumentException("Ungültiger Wert: " +
+                                               args[i - 1] + ' ' + args[i]);
+        return c;
+    }
+
+    private static int parseDistribution(String[] args, int i) {
+        int d = CityGenerator.forName(value(args, i));
+        if (d < 0)
+            throw new IllegalArgumentException("Ungültiger Wert: " +
+                                               args[i - 1] + ' ' + args[i]);
+        return d;
+    }
+
+    private static int parseInt(String[] args, int i, int min) {
+        try {
+            int value = Integer.parseInt(value(args, i));
+            if (value >= min)
+                return value;
+        } catch (NumberFormatException ex) {
+        }
+        throw new IllegalArgumentException("Ungültiger Wert: " +
+                                           args[i - 1] + ' ' + args[i]);
+    }
+
+    // Durch Kommas getrennte, nicht negative Zahlen
+    private static float[] parseFloats(String[] args, int i) {
+        StringTokenizer tokens = new StringTokenizer(value(args, i), ",");
+        float[] values = new float[tokens.countTokens()];
+        try {
+            for (int k = 0; k < values.length; ++k) {
+                values[k] = Float.parseFloat(tokens.nextToken());
+                if (values[k] < 0)
+                    throw new NumberFormatException();
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Ungültiger Wert: " +
+                                               args[i - 1] + ' ' + args[i]);
+        }
+        return values;
+    }
+
+    private static long parseLong(String[] args, int i, long min) {
+        try {
+            long value = Long.parseLong(value(args, i));
+            if (value >= min)
+                return value;
+        } catch (NumberFormatException ex) {
+        }
+        throw new IllegalArgumentException("Ungültiger Wert: " +
+                                           args[i - 1] + ' ' + args[i]);
+    }
+
+    private static Long parseLong(String[] args, int i) {
+        try {
+            return Long.valueOf(value(args, i));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Ungültiger Wert: " +
+                                               args[i - 1] + ' ' + args[i]);
+        }
+    }
+
+    private static float parseFloat(String[] args, int i) {
+        try {
+            return Float.parseFloat(value(args, i));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Ungültiger Wert: " +
+                                               args[i - 1] + ' ' + args[i]);
+        }
+    }
+
+    /*
+     * Optimierung durchführen
+     */
+
+    private void run() throws IOException {
+        long start = System.currentTimeMillis();
+        TSProblem tsp = createProblem();
+        if (param >= tsp.getNumParameters())
+            throw new IOException("Ungültiger Parameter: " + param);
+        if (temperature >= 0)
+            tsp.setTemperature(temperature);
+        if (coolingRate >= 0)
+            tsp.setCoolingRate(coolingRate);
+        if (renumber)
+            tsp.renumber();
+        tsp.setNeighborMoves(neighborMoves);
+        if (construction != Construction.RANDOM)
+            tsp.randomize(construction);
+        if (moveWeights != null) {
+            if (moveWeights.length > tsp.getNumMoves())
+                throw new IOException("Zu viele Gewichte: " + moveWeights.length);
+            for (int m = 0; m < tsp.getNumMoves(); ++m)
+                tsp.getMove(m).setWeight(m < moveWeights.length ? moveWeights[m] : 0);
+        }
+        long initTime = System.currentTimeMillis() - start;
+
+        if (numReplicas > 1) {
+            runReplicas(tsp, initTime);
+            return;
+        }
+        if (numStarts > 1) {
+            runStarts(tsp, initTime);
+            return;
+        }
+
+        // In Blöcken optimieren, bis ein Budget erschöpft ist
+        start = System.currentTimeMillis();
+        long steps = 0, time = 0;
+        while ((maxSteps < 0 || steps < maxSteps) &&
+               (maxTime < 0 || time < maxTime)) {
+            int chunk = CHUNK_STEPS;
+            if (maxSteps >= 0)
+                chunk = (int)Math.min(chunk, maxSteps - steps);
+            tsp.optimize(param, chunk);
+            steps += chunk;
+            time = System.currentTimeMillis() - start;
+        }
+
+        improve(tsp);
+        printResult(tsp, initTime, time);
+        if (output != null)
+            writeTours(tsp, output);
+    }
+
+    // Unabhängige Neustarts, das Schrittbudget gilt je Neustart
+    private void runStarts(TSProblem tsp, long initTime) throws IOException {
+        long start = System.currentTimeMillis();
+        MultiStart multi = new MultiStart(tsp);
+        MultiStart.Result result = multi.run(param, numStarts, (int)maxSteps);
+        multi.shutdown();
+        long time = System.currentTimeMillis() - start;
+
+        tsp = result.getBest();
+        improve(tsp);
+        printResult(tsp, initTime, time);
+        System.out.println("starts=" + numStarts);
+        System.out.println("starts.min=" + result.getMin());
+        System.out.println("starts.median=" + result.getMedian());
+        System.out.println("starts.max=" + result.getMax());
+        System.out.println("starts.mean=" + result.getMean());
+        System.out.println("starts.stddev=" + result.getStandardDeviation());
+        System.out.println("stepsPerSecond.total=" +
+                           (time > 0 ? (long)numStarts * tsp.getNumSteps() * 1000L / time : 0));
+        if (output != null)
+            writeTours(tsp, output);
+    }
+
+    // Parallel Tempering, das Schrittbudget gilt je Replikat
+    private void runReplicas(TSProblem tsp, long initTime) throws IOException {
+        long start = System.currentTimeMillis();
+        float maxTemperature = tsp.getTemperature();
+        float tmin = (minTemperature > 0 ? minTemperature : maxTemperature / 10000);
+        ParallelTempering pt =
+            new ParallelTempering(tsp, numReplicas, tmin, maxTemperature);
+        initTime += System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        long steps = 0, time = 0;
+        while ((maxSteps < 0 || steps < maxSteps) &&
+               (maxTime < 0 || time < maxTime)) {
+            int chunk = exchangeSteps;
+            if (maxSteps >= 0)
+                chunk = (int)Math.min(chunk, maxSteps - steps);
+            pt.optimize(param, 1, chunk);
+            steps += chunk;
+            time = System.currentTimeMillis() - start;
+        }
+        pt.shutdown();
+
+        tsp = pt.getBest(param);
+        improve(tsp);
+        printResult(tsp, initTime, time);
+        System.out.println("replicas=" + numReplicas);
+        for (int i = 0; i < numReplicas; ++i) {
+            System.out.println("replica." + i + ".temperature=" + pt.getTemperature(i));
+            System.out.println("replica." + i + ".value=" +
+                               pt.getReplica(i).getParameter(param).getValue());
+            if (i + 1 < numReplicas)
+                System.out.println("replica." + i + ".swaps=" + pt.getNumSwaps(i) +
+                                   '/' + pt.getNumSwapAttempts(i));
+        }
+        System.out.println("stepsPerSecond.total=" +
+                           (time > 0 ? pt.getNumSteps() * 1000L / time : 0));
+        if (output != null)
+            writeTours(tsp, output);
+    }
+
+    // Touren nachoptimieren, falls gewünscht
+    private void improve(TSProblem tsp) {
+        if (!improve)
+            return;
+        long start = System.currentTimeMillis();
+        double gain = tsp.improveTours();
+        System.out.println("improve.gain=" + gain);
+        System.out.println("time.improve=" + (System.currentTimeMillis() - start));
+    }
+
+    private TSProblem createProblem() throws IOException {
+        float[][] cities;
+        if (instance != null) {
+            cities = CityGenerator.createStandard(instance);
+            if (cities == null)
+                throw new IOException("Unbekannte Standardkarte: " + instance);
+        } else if (tsplib != null) {
+            tsplibReader = new TsplibReader(tsplib);
+            cities = new float[][] { tsplibReader.getX(), tsplibReader.getY() };
+        } else if (matrix != null) {
+            MappedMatrix distances = MappedMatrix.open(matrix);
+            if (seed != null)
+                return new TSProblem(numTours, distances, seed.longValue());
+            return new TSProblem(numTours, distances);
+        } else if (input != null)
+            cities = readCities(input);
+        else if (distribution != CityGenerator.UNIFORM) {
+            // Karte und Problem bekommen denselben Startwert, so
+            // wiederholt "seed=" aus der Ausgabe auch die Karte
+            if (seed == null)
+                seed = Long.valueOf(ThreadLocalRandom.current().nextLong());
+            cities = new CityGenerator(width, height, seed.longValue())
+                .generate(distribution, numCities);
+        } else {
+            if (seed != null)
+                return new TSProblem(numTours, numCities, width, height,
+                                     seed.longValue());
+            return new TSProblem(numTours, numCities, width, height);
+        }
+        if (seed != null)
+            return new TSProblem(numTours, cities[0], cities[1], seed.longValue());
+        return new TSProblem(numTours, cities[0], cities[1]);
+    }
+
+    /*
+     * Ein- und Ausgabe
+     */
+
+    // Städte lesen: eine Zeile "x y" je Stadt, '#' leitet Kommentare ein
+    private static float[][] readCities(String file) throws IOException {
+        float[] x = new float[1024], y = new float[1024];
+        int n = 0;
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            for (int number = 1; (line = reader.readLine()) != null; ++number) {
+                line = line.trim();
+                if (line.length() == 0 || line.charAt(0) == '#')
+                    continue;
+                StringTokenizer tokens = new StringTokenizer(line);
+                if (tokens.countTokens() < 2)
+                    throw new IOException(file + ':' + number + ": Koordinaten erwartet");
+                if (n == x.length) {
+                    float[] grownX = new float[2 * n], grownY = new float[2 * n];
+                    System.arraycopy(x, 0, grownX, 0, n);
+                    System.arraycopy(y, 0, grownY, 0, n);
+                    x = grownX;
+                    y = grownY;
+                }
+                try {
+                    x[n] = Float.parseFloat(tokens.nextToken());
+                    y[n] = Float.parseFloat(tokens.nextToken());
+                } catch (NumberFormatException ex) {
+                    throw new IOException(file + ':' + number + ": " + ex.getMessage());
+                }
+                ++n;
+            }
+        } finally {
+            reader.close();
+        }
+        if (n == 0)
+            throw new IOException(file + ": Keine Städte");
+
+        float[][] cities = { new float[n], new float[n] };
+        System.arraycopy(x, 0, cities[0], 0, n);
+        System.arraycopy(y, 0, cities[1], 0, n);
+        return cities;
+    }
+
+    // Ergebnis als "Schlüssel=Wert"-Zeilen ausgeben
+    private void printResult(TSProblem tsp, long initTime, long time) {
+        System.out.println("seed="        + tsp.getSeed());
+        System.out.println("start="       + Construction.getName(tsp.getConstruction()));
+        System.out.println("cities="      + tsp.getNumCities());
+        System.out.println("tours="       + tsp.getNumTours());
+        System.out.println("steps="       + tsp.getNumSteps());
+        System.out.println("accepted="    + tsp.getNumAccepted());
+        System.out.println("temperature=" + tsp.getTemperature());
+        for (int i = 0; i < tsp.getNumParameters(); ++i) {
+            TSProblem.Parameter p = tsp.getParameter(i);
+            System.out.println("param." + i + ".name="       + p.getName());
+            System.out.println("param." + i + ".value="      + p.getValue());
+            System.out.println("param." + i + ".difference=" + p.getDifference());
+        }
+        for (int i = 0; i < tsp.getNumMoves(); ++i) {
+            TSProblem.Move m = tsp.getMove(i);
+            System.out.println("move." + i + ".name="     + m.getName());
+            System.out.println("move." + i + ".weight="   + m.getWeight());
+            System.out.println("move." + i + ".attempts=" + m.getNumAttempts());
+            System.out.println("move." + i + ".accepted=" + m.getNumAccepted());
+        }
+        System.out.println("distance=" + tsp.getDistanceOracle());
+        System.out.println("time.init=" + initTime);
+        System.out.println("time.optimize=" + time);
+        System.out.println("stepsPerSecond=" +
+                           (time > 0 ? tsp.getNumSteps() * 1000L / time : 0));
+        if (tsplibReader != null)
+            printTsplib(tsp);
+        if (tsp.getDistanceOracle() instanceof MappedMatrix)
+            printMatrix(tsp, (MappedMatrix)tsp.getDistanceOracle());
+    }
+
+    // Länge aller Touren nach den Einträgen der Matrix, jede Tour in
+    // der kürzeren Richtung (der Löser rechnet mit dem Mittelwert)
+    private static void printMatrix(TSProblem tsp, MappedMatrix distances) {
+        TourStore tours = tsp.getTours();
+        double length = 0;
+        for (int t = 0; t < tours.getNumTours(); ++t) {
+            if (tours.size(t) < 2)
+                continue;
+            double forward = 0, backward = 0;
+            int first = tours.head(t), c = first;
+            do {
+                int next = tours.next(c);
+                forward += distances.getDirected(c, next);
+                backward += distances.getDirected(next, c);
+                c = next;
+            } while (c != first);
+            length += Math.min(forward, backward);
+        }
+        System.out.println("matrix.symmetric=" + distances.isSymmetric());
+        System.out.println("matrix.length=" + length);
+    }
+
+    // Länge aller Touren nach der genauen TSPLIB-Formel
+    private void printTsplib(TSProblem tsp) {
+        TourStore tours = tsp.getTours();
+        int[] tour = new int[tsp.getNumCities()];
+        long length = 0;
+        for (int t = 0; t < tours.getNumTours(); ++t) {
+            int size = tours.toArray(t, tour);
+            for (int i = 0; i < size; ++i)
+                tour[i] = tsp.getOriginalCity(tour[i]);
+            length += tsplibReader.getLength(tour, size);
+        }
+        System.out.println("tsplib.name=" + tsplibReader.getName());
+        System.out.println("tsplib.type=" + tsplibReader.getTypeName());
+        System.out.println("tsplib.length=" + length);
+    }
+
+    // Touren schreiben: Städteindizes (in Eingabereihenfolge, auch nach
+    // -renumber) je Zeile
+    private static void writeTours(TSProblem tsp, String file) throws IOException {
+        TourStore tours = tsp.getTours();
+        int[] tour = new int[tsp.getNumCities()];
+        PrintWriter writer =
+            new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            for (int t = 0; t < tours.getNumTours(); ++t) {
+                int size = tours.toArray(t, tour);
+                for (int i = 0; i < size; ++i) {
+                    if (i > 0)
+                        writer.print(' ');
+                    writer.print(tsp.getOriginalCity(tour[i]));
+                }
+                writer.println();
+            }
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError())
+            throw new IOException(file + ": Schreibfehler");
+    }
+}
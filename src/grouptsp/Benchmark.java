@@ -0,0 +1,110 @@
+/*
+ * Benchmark.java - Laufzeitvergleich mit und ohne Neunummerierung
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse Benchmark
+ *
+ * Optimiert dieselbe Karte einmal in der Eingabereihenfolge der Städte
+ * und einmal nach TSProblem.renumber() und gibt die Zeiten für
+ * Kandidatenlisten, Schritte und Nachoptimierung sowie die Trefferquote
+ * des Abstandscaches aus. Die Läufe wechseln sich ab, damit beide
+ * gleich vom JIT profitieren:
+ *
+ *   java -cp GTSP.jar grouptsp.Benchmark -cities 100000 -rounds 3
+ */
+public class Benchmark {
+
+    private static final String USAGE =
+        "Aufruf: java -cp GTSP.jar grouptsp.Benchmark [Optionen]\n" +
+        "  -tours N         Anzahl der Rundreisen (20)\n" +
+        "  -cities N        Anzahl der Städte (100000)\n" +
+        "  -steps N         Schritte je Lauf (2000000)\n" +
+        "  -rounds N        Läufe je Variante (3)\n" +
+        "  -seed S          Startwert (1)\n";
+
+    private static final String VARIANT[] = { "input", "hilbert" };
+
+    /*
+     * Main
+     */
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int numTours = 20, numCities = 100000, steps = 2000000, rounds = 3;
+        long seed = 1;
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("Wert fehlt: " + args[i]);
+                String arg = args[i], value = args[++i];
+                if (arg.equals("-tours"))
+                    numTours = Integer.parseInt(value);
+                else if (arg.equals("-cities"))
+                    numCities = Integer.parseInt(value);
+                else if (arg.equals("-steps"))
+                    steps = Integer.parseInt(value);
+                else if (arg.equals("-rounds"))
+                    rounds = Integer.parseInt(value);
+                else if (arg.equals("-seed"))
+                    seed = Long.parseLong(value);
+                else
+                    throw new IllegalArgumentException("Unbekannte Option: " + arg);
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+
+        // Seitenlänge so, dass etwa jedes zehnte Feld eine Stadt hat
+        int side = (int)Math.ceil(Math.sqrt(10.0 * numCities));
+        TSProblem base = new TSProblem(numTours, numCities, side, side, seed);
+        base.randomize(Construction.CLUSTER);
+        System.out.println("cities=" + numCities);
+        System.out.println("tours=" + numTours);
+        System.out.println("steps=" + steps);
+
+        for (int r = 0; r < rounds; ++r) {
+            for (int v = 0; v < VARIANT.length; ++v)
+                run(base, v, r, steps);
+        }
+    }
+
+    // Ein Lauf auf einer Kopie von "base"
+    private static void run(TSProblem base, int variant, int round, int steps) {
+        String prefix = VARIANT[variant] + '.' + round + '.';
+        TSProblem tsp = new TSProblem(base, base.getSeed());
+        long start = System.nanoTime();
+        if (variant == 1)
+            tsp.renumber();
+        long renumber = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        tsp.setNeighborMoves(true);
+        tsp.getNeighbors();
+        long neighbors = System.nanoTime() - start;
+
+        for (int m = 0; m < tsp.getNumMoves(); ++m)
+            tsp.getMove(m).setWeight(1);
+        start = System.nanoTime();
+        tsp.optimize(0, steps);
+        long optimize = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        tsp.improveTours();
+        long improve = System.nanoTime() - start;
+
+        System.out.println(prefix + "time.renumber=" + renumber / 1000000);
+        System.out.println(prefix + "time.neighbors=" + neighbors / 1000000);
+        System.out.println(prefix + "time.optimize=" + optimize / 1000000);
+        System.out.println(prefix + "time.improve=" + improve / 1000000);
+        System.out.println(prefix + "stepsPerSecond=" +
+                           (optimize > 0 ? steps * 1000000000L / optimize : 0));
+        System.out.println(prefix + "value=" + tsp.getParameter(0).getValue());
+        System.out.println(prefix + "distance=" + tsp.getDistanceOracle());
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * CityGenerator.java - Zufallskarten mit verschiedenen Verteilungen
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Klasse CityGenerator
+ *
+ * Erzeugt verschiedene Städte auf den ganzzahligen Feldern einer
+ * Karte der Größe width x height. Belegte Felder stehen in einem
+ * Bitfeld, solange die Karte höchstens BITSET_CELLS Felder (oder 64
+ * Felder je Stadt) hat, sonst in einer offenen Hashtabelle aus longs.
+ * Es werden keine Objekte je Stadt angelegt. Verteilungen:
+ *
+ * - UNIFORM: Gleichverteilt nach Floyd: für j = N - n bis N - 1 wird
+ *   t aus 0..j gezogen und t genommen, falls frei, sonst j. Das sind
+ *   genau n Ziehungen, auch wenn fast alle Felder belegt werden. Die
+ *   Städte werden danach gemischt.
+ * - CLUSTERED: Normalverteilt um zufällige Zentren, etwa
+ *   CLUSTER_CITIES Städte je Zentrum.
+ * - ROADS: Auf den Linien eines Straßengitters, dessen Abstand sich
+ *   nach der Dichte richtet.
+ *
+ * Findet eine Stadt bei CLUSTERED oder ROADS nach höchstens MAX_TRIES
+ * Versuchen (weniger bei voller Karte) kein freies Feld, wird sie auf
+ * ein zufälliges freies Feld gesetzt. Mit dem gleichen
+ * Startwert entsteht die gleiche Karte.
+ */
+public class CityGenerator {
+
+    /*
+     * Verteilungen
+     */
+
+    public static final int UNIFORM   = 0,
+                            CLUSTERED = 1,
+                            ROADS     = 2;
+
+    private static final String NAMES[] = { "uniform", "clustered", "roads" };
+
+    /*
+     * Standardkarten für Messungen: Name, Verteilung, Städte, Seitenlänge.
+     * Jede Karte hat den Startwert STANDARD_SEED und etwa eine Stadt auf
+     * 100 Feldern.
+     */
+
+    private static final Object STANDARD[][] = {
+        { "uniform-1k",     new int[] { UNIFORM,   1000,    317 } },
+        { "uniform-10k",    new int[] { UNIFORM,   10000,   1000 } },
+        { "uniform-100k",   new int[] { UNIFORM,   100000,  3163 } },
+        { "uniform-1m",     new int[] { UNIFORM,   1000000, 10000 } },
+        { "clustered-10k",  new int[] { CLUSTERED, 10000,   1000 } },
+        { "clustered-100k", new int[] { CLUSTERED, 100000,  3163 } },
+        { "roads-10k",      new int[] { ROADS,     10000,   1000 } },
+        { "roads-100k",     new int[] { ROADS,     100000,  3163 } },
+    };
+
+    private static final long STANDARD_SEED = 1;
+
+    /*
+     * Konstanten
+     */
+
+    private static final long BITSET_CELLS   = 1L << 27;   // 16 MB
+    private static final int  CLUSTER_CITIES = 1000,
+                              MAX_TRIES      = 32;
+
+    /*
+     * Private Felder
+     */
+
+    private final int  width, height;
+    private final long numCells;
+    private final SplittableRandom random;
+
+    private long bits[];                    // Belegte Felder als Bitfeld
+    private long table[];                   // ... oder als Hashtabelle
+    private int  tableMask;
+
+    /*
+     * Konstruktoren
+     */
+
+    public CityGenerator(int width, int height, long seed) {
+        this(width, height, new SplittableRandom(seed));
+    }
+
+    // Mit fremdem Zufallsstrom (z.B. dem eines TSProblem)
+    public CityGenerator(int width, int height, SplittableRandom random) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Leere Karte");
+        this.width = width;
+        this.height = height;
+        this.random = random;
+        numCells = (long)width * height;
+    }
+
+    /*
+     * "numCities" Städte mit der Verteilung "distribution" erzeugen,
+     * Ergebnis { x, y }
+     */
+
+    public float[][] generate(int distribution, int numCities) {
+        if (numCities < 0 || numCities > numCells)
+            throw new IllegalArgumentException("Zu viele Städte für die Karte");
+        createSet(numCities);
+        long[] cells;
+        switch (distribution) {
+        case UNIFORM:
+            cells = uniform(numCities);
+            break;
+        case CLUSTERED:
+            cells = clustered(numCities);
+            break;
+        case ROADS:
+            cells = roads(numCities);
+            break;
+        default:
+            throw new IllegalArgumentException("Unbekannte Verteilung: " + distribution);
+        }
+        bits = table = null;
+
+        float[][] cities = { new float[numCities], new float[numCities] };
+        for (int i = 0; i < numCities; ++i) {
+            cities[0][i] = cells[i] % width;
+            cities[1][i] = cells[i] / width;
+        }
+        return cities;
+    }
+
+    /*
+     * Standardkarten
+     */
+
+    public static int getNumStandard() {
+        return STANDARD.length;
+    }
+
+    public static String getStandardName(int i) {
+        return (String)STANDARD[i][0];
+    }
+
+    // Standardkarte zum Namen, null wenn unbekannt
+    public static float[][] createStandard(String name) {
+        for (int i = 0; i < STANDARD.length; ++i) {
+            if (STANDARD[i][0].equals(name)) {
+                int[] spec = (int[])STANDARD[i][1];
+                return new CityGenerator(spec[2], spec[2], STANDARD_SEED)
+                    .generate(spec[0], spec[1]);
+            }
+        }
+        return null;
+    }
+
+    public static String getName(int distribution) {
+        return NAMES[distribution];
+    }
+
+    // Verteilung zum Namen, -1 wenn unbekannt
+    public static int forName(String name) {
+        for (int i = 0; i < NAMES.length; ++i) {
+            if (NAMES[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /*
+     * Verteilungen
+     */
+
+    private long[] uniform(int n) {
+        long[] cells = new long[n];
+        int k = 0;
+        for (long j = numCells - n; j < numCells; ++j) {
+            long t = random.nextLong(j + 1);
+            if (add(t))
+                cells[k++] = t;
+            else {
+                add(j);
+                cells[k++] = j;
+            }
+        }
+
+        // Floyd liefert große Nummern am Ende, deshalb mischen
+        for (int i = n - 1; i > 0; --i) {
+            int r = random.nextInt(i + 1);
+            long c = cells[i];
+            cells[i] = cells[r];
+            cells[r] = c;
+        }
+        return cells;
+    }
+
+    private long[] clustered(int n) {
+        int numClusters = Math.max(1, n / CLUSTER_CITIES);
+        double[] cx = new double[numClusters], cy = new double[numClusters];
+        for (int i = 0; i < numClusters; ++i) {
+            cx[i] = random.nextDouble() * width;
+            cy[i] = random.nextDouble() * height;
+        }
+        // Die Wolken decken zusammen etwa ein Viertel der Karte ab
+        double sigma = Math.sqrt(numCells / (4.0 * Math.PI * numClusters)) / 2;
+
+        long[] cells = new long[n];
+        for (int i = 0; i < n; ++i) {
+            int c = random.nextInt(numClusters);
+            long cell = -1;
+            for (int tries = maxTries(i); cell < 0 && tries > 0; --tries) {
+                long x = Math.round(cx[c] + sigma * gaussian()),
+                     y = Math.round(cy[c] + sigma * gaussian());
+                if (x >= 0 && x < width && y >= 0 && y < height &&
+                    add(y * width + x))
+                    cell = y * width + x;
+            }
+            cells[i] = (cell >= 0 ? cell : anyFree());
+        }
+        return cells;
+    }
+
+    private long[] roads(int n) {
+        // Abstand so, dass die Straßen etwa doppelt so viele Felder wie
+        // Städte haben
+        int spacing = (int)Math.max(2, Math.min(numCells / Math.max(n, 1),
+                                                Math.min(width, height) / 2));
+        int numColumns = (width - 1) / spacing + 1,
+            numRows = (height - 1) / spacing + 1;
+        long columnCells = (long)numColumns * height,
+             roadCells = columnCells + (long)numRows * width;
+
+        long[] cells = new long[n];
+        for (int i = 0; i < n; ++i) {
+            long cell = -1;
+            for (int tries = maxTries(i); cell < 0 && tries > 0; --tries) {
+                long x, y;
+                if (random.nextLong(roadCells) < columnCells) {
+                    // Nord-Süd-Straße
+                    x = (long)random.nextInt(numColumns) * spacing;
+                    y = random.nextInt(height);
+                } else {
+                    x = random.nextInt(width);
+                    y = (long)random.nextInt(numRows) * spacing;
+                }
+                if (add(y * width + x))
+                    cell = y * width + x;
+            }
+            cells[i] = (cell >= 0 ? cell : anyFree());
+        }
+        return cells;
+    }
+
+    /*
+     * Private Hilfsmethoden
+     */
+
+    // Versuche für die Stadt "i", weniger, je voller die Karte ist
+    private int maxTries(int i) {
+        return (int)Math.max(1, MAX_TRIES * (numCells - i) / numCells);
+    }
+
+    // Ein zufälliges freies Feld. Im Bitfeld ab einer zufälligen
+    // Stelle das nächste freie Feld, damit auch fast volle Karten
+    // schnell gefüllt werden.
+    private long anyFree() {
+        long cell = random.nextLong(numCells);
+        if (bits == null) {
+            while (!add(cell))
+                cell = random.nextLong(numCells);
+            return cell;
+        }
+        int word = (int)(cell >>> 6);
+        long free = ~bits[word] & (-1L << cell);
+        while (free == 0) {
+            word = (word + 1) % bits.length;
+            free = ~bits[word];
+        }
+        cell = ((long)word << 6) + Long.numberOfTrailingZeros(free);
+        if (cell >= numCells) {
+            // Hinter dem letzten Feld: von vorn suchen
+            for (word = 0; (free = ~bits[word]) == 0; ++word)
+                ;
+            cell = ((long)word << 6) + Long.numberOfTrailingZeros(free);
+        }
+        add(cell);
+        return cell;
+    }
+
+    // Standardnormalverteilte Zahl (Polarmethode)
+    private double gaussian() {
+        double u, v, s;
+        do {
+            u = 2 * random.nextDouble() - 1;
+            v = 2 * random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        return u * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    // Menge der belegten Felder für "n" Städte anlegen
+    private void createSet(int n) {
+        if (numCells <= BITSET_CELLS || numCells <= 64L * n) {
+            bits = new long[(int)((numCells + 63) >>> 6)];
+            table = null;
+        } else {
+            int capacity = Integer.highestOneBit(Math.max(2 * n, 8) - 1) << 1;
+            table = new long[capacity];
+            Arrays.fill(table, -1);
+            tableMask = capacity - 1;
+            bits = null;
+        }
+    }
+
+    // Feld belegen, false wenn es schon belegt war
+    private boolean add(long cell) {
+        if (bits != null) {
+            int word = (int)(cell >>> 6);
+            long mask = 1L << cell;
+            if ((bits[word] & mask) != 0)
+                return false;
+            bits[word] |= mask;
+            return true;
+        }
+        int i = (int)(mix(cell) & tableMask);
+        while (table[i] >= 0) {
+            if (table[i] == cell)
+                return false;
+            i = (i + 1) & tableMask;
+        }
+        table[i] = cell;
+        return true;
+    }
+
+    private static long mix(long h) {
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Construction.java - Startlösungen: erst Gebiete, dann Touren
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Klasse Construction
+ *
+ * Teilt die Städte zuerst in so viele Gebiete, wie es Touren gibt, und
+ * ordnet dann jedes Gebiet entlang einer Hilbert-Kurve. Das ergibt
+ * Touren, die sich kaum überschneiden und nur noch wenig
+ * Nachoptimierung brauchen. Verfahren:
+ *
+ * - SWEEP: Die Städte werden nach ihrem Winkel um den Schwerpunkt
+ *   sortiert und in gleich große Sektoren geteilt. Der erste Sektor
+ *   beginnt an der größten Winkellücke, um bis zu einen Sektor
+ *   zufällig verschoben.
+ * - CLUSTER: k-Means mit gleich großen Gebieten. Start sind
+ *   Abschnitte der Hilbert-Kurve, deren Grenzen zufällig um bis zu
+ *   einen Abschnitt verschoben sind. Jede Runde werden die Städte
+ *   nach ihrem Bedauern (Abstand zum zweitnächsten minus Abstand zum
+ *   nächsten Zentrum) absteigend verteilt, jede an das nächste Zentrum
+ *   mit freiem Platz, und die Zentren wandern zum Mittelwert.
+ *
+ * Der Zufall kommt aus dem Strom des Problems, so ergibt jeder
+ * Aufruf von TSProblem.randomize() und jeder Neustart eine andere
+ * Startlösung, mit gleichem Startwert aber dieselbe.
+ *
+ * Sortiert wird mit Arrays.parallelSort(), die Abstände zu den Zentren
+ * werden ab PARALLEL_CITIES Städten im ForkJoinPool berechnet.
+ */
+public class Construction {
+
+    /*
+     * Verfahren
+     */
+
+    public static final int RANDOM  = 0,   // Reihum in zufälliger Reihenfolge
+                            SWEEP   = 1,
+                            CLUSTER = 2;
+
+    private static final String NAMES[] = { "random", "sweep", "cluster" };
+
+    /*
+     * Konstanten
+     */
+
+    private static final int HILBERT_ORDER   = 15,   // Gitter 2^15 x 2^15
+                             ITERATIONS      = 8,
+                             PARALLEL_CITIES = 4096;
+
+    /*
+     * Private Felder
+     */
+
+    private final float x[], y[];
+    private final int   numTours;
+    private final SplittableRandom random;
+    private final int   cluster[];          // Gebiet je Stadt
+
+    // k-Means: Zentren und nächstes Zentrum und Bedauern je Stadt
+    private float centerX[], centerY[];
+    private int   nearest[];
+    private float regret[];
+
+    /*
+     * Konstruktor
+     */
+
+    public Construction(float[] x, float[] y, int numTours,
+                        SplittableRandom random) {
+        this.x = x;
+        this.y = y;
+        this.numTours = numTours;
+        this.random = random;
+        cluster = new int[x.length];
+    }
+
+    /*
+     * Touren mit dem Verfahren "method" erstellen. Die Touren in
+     * "tours" müssen leer sein. RANDOM braucht einen Zufallsstrom und
+     * wird von TSProblem selbst erledigt.
+     */
+
+    public void build(int method, TourStore tours) {
+        if (x.length == 0)
+            return;
+        int[] order = hilbertOrder(x, y);
+        switch (method) {
+        case SWEEP:
+            sweep();
+            break;
+        case CLUSTER:
+            balancedKMeans(order);
+            break;
+        default:
+            throw new IllegalArgumentException("Unbekanntes Verfahren: " + method);
+        }
+
+        // In Kurvenreihenfolge anhängen, so ist jede Tour entlang der
+        // Hilbert-Kurve geordnet
+        for (int i = 0; i < order.length; ++i)
+            tours.add(cluster[order[i]], order[i]);
+    }
+
+    // Gebiet der Stadt "c" nach build()
+    public int getCluster(int c) {
+        return cluster[c];
+    }
+
+    public static String getName(int method) {
+        return NAMES[method];
+    }
+
+    // Verfahren zum Namen, -1 wenn unbekannt
+    public static int forName(String name) {
+        for (int i = 0; i < NAMES.length; ++i) {
+            if (NAMES[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    /*
+     * Städte entlang einer Hilbert-Kurve über dem umgebenden Rechteck
+     */
+
+    public static int[] hilbertOrder(float[] x, float[] y) {
+        int n = x.length;
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE,
+              maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; ++i) {
+            minX = Math.min(minX, x[i]);
+            maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int side = 1 << HILBERT_ORDER;
+        double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), 1e-9f);
+
+        // Schlüssel: Kurvenposition oben, Stadt unten
+        long[] keys = new long[n];
+        for (int i = 0; i < n; ++i) {
+            int hx = (int)((x[i] - minX) * scale),
+                hy = (int)((y[i] - minY) * scale);
+            keys[i] = ((long)hilbert(hx, hy) << 32) | i;
+        }
+        return sortedCities(keys);
+    }
+
+    // Städte aus den unteren 32 Bit der sortierten Schlüssel
+    private static int[] sortedCities(long[] keys) {
+        Arrays.parallelSort(keys);
+        int[] cities = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i)
+            cities[i] = (int)keys[i];
+        return cities;
+    }
+
+    // Position von (hx, hy) auf der Hilbert-Kurve
+    private static int hilbert(int hx, int hy) {
+        int d = 0;
+        for (int s = 1 << (HILBERT_ORDER - 1); s > 0; s >>>= 1) {
+            int rx = ((hx & s) != 0 ? 1 : 0),
+                ry = ((hy & s) != 0 ? 1 : 0);
+            d += s * s * ((3 * rx) ^ ry);
+            // Quadranten drehen
+            if (ry == 0) {
+                if (rx == 1) {
+                    hx = s - 1 - hx;
+                    hy = s - 1 - hy;
+                }
+                int t = hx;
+                hx = hy;
+                hy = t;
+            }
+        }
+        return d;
+    }
+
+    /*
+     * Winkelsektoren um den Schwerpunkt
+     */
+
+    private void sweep() {
+        int n = x.length;
+        double cx = 0, cy = 0;
+        for (int i = 0; i < n; ++i) {
+            cx += x[i];
+            cy += y[i];
+        }
+        cx /= n;
+        cy /= n;
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; ++i) {
+            double a = (Math.atan2(y[i] - cy, x[i] - cx) + Math.PI) / (2 * Math.PI);
+            keys[i] = ((long)Math.min((int)(a * (1 << 30)), (1 << 30) - 1) << 32) | i;
+        }
+        Arrays.parallelSort(keys);
+
+        // Größte Lücke zwischen zwei Winkeln (auch über 0 hinweg) suchen
+        int first = 0;
+        long gap = (keys[0] >>> 32) + (1L << 30) - (keys[n - 1] >>> 32);
+        for (int i = 1; i < n; ++i) {
+            long g = (keys[i] >>> 32) - (keys[i - 1] >>> 32);
+            if (g > gap) {
+                gap = g;
+                first = i;
+            }
+        }
+
+        // Gleich große Sektoren ab der (verschobenen) Lücke
+        first += random.nextInt(Math.max(1, n / numTours));
+        for (int p = 0; p < n; ++p)
+            cluster[(int)keys[(first + p) % n]] = (int)((long)p * numTours / n);
+    }
+
+    /*
+     * k-Means mit gleich großen Gebieten
+     */
+
+    private void balancedKMeans(int[] order) {
+        int n = x.length;
+        centerX = new float[numTours];
+        centerY = new float[numTours];
+        nearest = new int[n];
+        regret = new float[n];
+
+        // Start: Abschnitte der Hilbert-Kurve, alle Grenzen um "shift"
+        // Städte nach vorn verschoben (der erste Abschnitt wird kürzer)
+        long shift = random.nextInt(Math.max(1, n / numTours));
+        for (int p = 0; p < n; ++p)
+            cluster[order[p]] = (int)((p + shift) * numTours / (n + shift));
+        updateCenters();
+
+        int capacity = (n + numTours - 1) / numTours;
+        int[] size = new int[numTours];
+        long[] keys = new long[n];
+        for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+            ForkJoinPool.commonPool().invoke(new Nearest(0, n));
+
+            // Größtes Bedauern zuerst (Bedauern >= 0, die Bits sind
+            // also wie die Zahlen geordnet)
+            for (int i = 0; i < n; ++i)
+                keys[i] = ((long)(Integer.MAX_VALUE -
+                                  Float.floatToIntBits(regret[i])) << 32) | i;
+            Arrays.parallelSort(keys);
+
+            Arrays.fill(size, 0);
+            boolean moved = false;
+            for (int k = 0; k < n; ++k) {
+                int c = (int)keys[k], t = nearest[c];
+                if (size[t] >= capacity)
+                    t = nearestFree(c, size, capacity);
+                moved |= (cluster[c] != t);
+                cluster[c] = t;
+                ++size[t];
+            }
+            if (!moved)
+                break;
+            updateCenters();
+        }
+        centerX = centerY = regret = null;
+        nearest = null;
+    }
+
+    // Zentren auf die Mittelwerte ihrer Gebiete setzen
+    private void updateCenters() {
+        double[] sumX = new double[numTours], sumY = new double[numTours];
+        int[] count = new int[numTours];
+        for (int i = 0; i < x.length; ++i) {
+            sumX[cluster[i]] += x[i];
+            sumY[cluster[i]] += y[i];
+            ++count[cluster[i]];
+        }
+        for (int t = 0; t < numTours; ++t) {
+            if (count[t] > 0) {
+                centerX[t] = (float)(sumX[t] / count[t]);
+                centerY[t] = (float)(sumY[t] / count[t]);
+            }
+        }
+    }
+
+    // Nächstes Zentrum mit freiem Platz
+    private int nearestFree(int c, int[] size, int capacity) {
+        int best = -1;
+        float bestDistance = Float.MAX_VALUE;
+        for (int t = 0; t < numTours; ++t) {
+            float d = distance(c, t);
+            if (size[t] < capacity && d < bestDistance) {
+                bestDistance = d;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    // Quadrat des Abstands von Stadt "c" zum Zentrum "t"
+    private float distance(int c, int t) {
+        float dx = x[c] - centerX[t], dy = y[c] - centerY[t];
+        return dx * dx + dy * dy;
+    }
+
+    /*
+     * Nächstes Zentrum und Bedauern für die Städte lo bis hi - 1,
+     * geteilt, bis höchstens PARALLEL_CITIES Städte übrig sind
+     */
+
+    private class Nearest extends RecursiveAction {
+        private final int lo, hi;
+
+        public Nearest(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo > PARALLEL_CITIES) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Nearest(lo, mid), new Nearest(mid, hi));
+                return;
+            }
+            for (int c = lo; c < hi; ++c) {
+                int best = 0;
+                float d1 = Float.MAX_VALUE, d2 = Float.MAX_VALUE;
+                for (int t = 0; t < numTours; ++t) {
+                    float d = distance(c, t);
+                    if (d < d1) {
+                        d2 = d1;
+                        d1 = d;
+                        best = t;
+                    } else if (d < d2)
+                        d2 = d;
+                }
+                nearest[c] = best;
+                regret[c] = (numTours > 1 ? (float)(Math.sqrt(d2) - Math.sqrt(d1)) : 0);
+            }
+        }
+    } // private class Nearest
+}
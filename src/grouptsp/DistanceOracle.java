@@ -0,0 +1,299 @@
+/*
+ * DistanceOracle.java - Gemeinsame Abstandsberechnung für die Städte
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse DistanceOracle
+ *
+ * Liefert die Abstände zwischen den Städten. Je nach Größe des
+ * Problems wird eine von zwei Stufen verwendet:
+ *
+ * 1. Kleine Probleme: vorberechnete, symmetrische Matrix
+ *    (nur das untere Dreieck, flach in einem Feld).
+ * 2. Große Probleme: Zeilen werden bei Bedarf berechnet und in einem
+ *    LRU-Cache mit begrenzter Größe (in Bytes) gehalten. Eine Zeile
+ *    wird erst geladen, wenn ihre Stadt genug Fehlzugriffe hatte,
+ *    sonst wird der einzelne Abstand direkt berechnet.
+ *
+ * Abstände aus einer Datei liefert die Unterklasse MappedMatrix.
+ *
+ * Die Trefferquote wird mitgezählt, damit der Cache passend
+ * dimensioniert werden kann. Instanzen sind nicht thread-sicher,
+ * für jeden weiteren Thread wird mit fork() eine eigene Instanz
+ * erzeugt.
+ */
+public abstract class DistanceOracle {
+
+    /*
+     * Konstanten
+     */
+
+    // Standardgröße in Bytes (Systemeigenschaft "distanceBudget")
+    public static final long DEFAULT_BUDGET =
+        Long.getLong("distanceBudget", 64L << 20).longValue();
+
+    // Mindestanzahl der Zeilen im Cache
+    private static final int MIN_ROWS = 2;
+
+    // Fehlzugriffe einer Stadt, bevor ihre Zeile geladen wird
+    // (mindestens ROW_ADMIT, sonst n / ROW_COST). Eine Zeile kostet n
+    // Berechnungen, so kosten die Ladevorgänge höchstens ROW_COST-mal
+    // so viel wie die einzeln berechneten Fehlzugriffe.
+    private static final int ROW_ADMIT = 8,
+                             ROW_COST  = 8;
+
+    /*
+     * Private Felder
+     */
+
+    private final float x[], y[];
+    protected long hits, misses;
+
+    /*
+     * Konstruktor und Erzeugungsmethode
+     */
+
+    protected DistanceOracle(float[] x, float[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    // Passende Stufe für die gegebene Größe in Bytes wählen
+    public static DistanceOracle create(float[] x, float[] y, long budget) {
+        long n = x.length;
+        if (n * (n - 1) / 2 * 4 <= budget && n * (n - 1) / 2 <= Integer.MAX_VALUE)
+            return new Matrix(x, y);
+        return new RowCache(x, y, budget);
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public abstract float distance(int a, int b);
+
+    // Instanz für einen weiteren Thread (die Matrix wird geteilt)
+    public abstract DistanceOracle fork();
+
+    // Benutzte Größe in Bytes
+    public abstract long getSize();
+
+    // Liegen alle Abstände vorberechnet vor?
+    public boolean isDense() {
+        return false;
+    }
+
+    // Sind die Abstände die euklidischen Abstände der Koordinaten?
+    public boolean isEuclidean() {
+        return true;
+    }
+
+    /*
+     * Abstände nach TSProblem.renumber(): Die neue Stadt "i" ist die
+     * bisherige Stadt "order[i]" und liegt bei (x[i], y[i])
+     */
+    public DistanceOracle renumber(int[] order, float[] x, float[] y) {
+        return create(x, y, DEFAULT_BUDGET);
+    }
+
+    public int getNumCities() {
+        return x.length;
+    }
+
+    // Koordinaten der Städte
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public float getHitRate() {
+        long total = hits + misses;
+        return (total == 0 ? 1 : (float)hits / total);
+    }
+
+    public String toString() {
+        return getClass().getName() +
+               "[numCities=" + x.length  +
+               ",size="      + getSize() +
+               ",hits="      + hits      +
+               ",misses="    + misses    +
+               ",hitRate="   + getHitRate() + ']';
+    }
+
+    /*
+     * Abstand direkt aus den Koordinaten berechnen
+     */
+
+    protected float compute(int a, int b) {
+        float dx = x[a] - x[b], dy = y[a] - y[b];
+        return (float)Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /*
+     * Stufe 1: Vorberechnete Dreiecksmatrix
+     */
+
+    private static class Matrix extends DistanceOracle {
+        private final float matrix[];
+
+        public Matrix(float[] x, float[] y) {
+            super(x, y);
+            int n = x.length;
+            matrix = new float[(int)((long)n * (n - 1) / 2)];
+            for (int a = 1, i = 0; a < n; ++a) {
+                for (int b = 0; b < a; ++b)
+                    matrix[i++] = compute(a, b);
+            }
+        }
+
+        // Die Matrix wird nur gelesen und kann geteilt werden
+        public DistanceOracle fork() {
+            return this;
+        }
+
+        public float distance(int a, int b) {
+            // Alle Zugriffe sind Treffer und werden nicht gezählt.
+            // a * (a - 1) läuft ab a > 46341 in int über.
+            if (a > b)
+                return matrix[(int)((long)a * (a - 1) / 2) + b];
+            if (a < b)
+                return matrix[(int)((long)b * (b - 1) / 2) + a];
+            return 0;
+        }
+
+        public long getSize() {
+            return 4L * matrix.length;
+        }
+
+        public boolean isDense() {
+            return true;
+        }
+
+        public float getHitRate() {
+            return 1;
+        }
+    } // private static class Matrix
+
+    /*
+     * Stufe 2: Zeilen-Cache mit LRU-Verdrängung
+     */
+
+    private static class RowCache extends DistanceOracle {
+        private final float row[][];        // Zeilen der Cache-Plätze
+        private final int   slotOf[],       // Platz der Stadt (-1 = keiner)
+                            cityOf[],       // Stadt des Platzes (-1 = keine)
+                            newer[], older[]; // LRU-Liste der Plätze
+        private final int   missCount[];    // Fehlzugriffe je Stadt
+        private final int   admit;
+        private int newest, oldest;
+        private final long budget;
+
+        public RowCache(float[] x, float[] y, long budget) {
+            super(x, y);
+            this.budget = budget;
+            int n = x.length;
+            int rows = (int)Math.min(n, Math.max(MIN_ROWS, budget / (4L * n)));
+            row = new float[rows][];
+            slotOf = new int[n];
+            missCount = new int[n];
+            admit = Math.max(ROW_ADMIT, n / ROW_COST);
+            cityOf = new int[rows];
+            newer = new int[rows];
+            older = new int[rows];
+            for (int c = 0; c < n; ++c)
+                slotOf[c] = -1;
+            // Alle Plätze in die LRU-Liste eintragen
+            for (int s = 0; s < rows; ++s) {
+                cityOf[s] = -1;
+                newer[s] = s - 1;
+                older[s] = s + 1;
+            }
+            older[rows - 1] = -1;
+            newest = 0;
+            oldest = rows - 1;
+        }
+
+        public DistanceOracle fork() {
+            return new RowCache(getX(), getY(), budget);
+        }
+
+        public float distance(int a, int b) {
+            if (a == b)
+                return 0;
+            int s = slotOf[a];
+            if (s >= 0) {
+                ++hits;
+                touch(s);
+                return row[s][b];
+            }
+            s = slotOf[b];
+            if (s >= 0) {
+                ++hits;
+                touch(s);
+                return row[s][a];
+            }
+            ++misses;
+            if (++missCount[a] < admit)
+                return compute(a, b);
+            missCount[a] = 0;
+            return load(a)[b];
+        }
+
+        public long getSize() {
+            long size = 0;
+            for (int s = 0; s < row.length; ++s) {
+                if (row[s] != null)
+                    size += 4L * row[s].length;
+            }
+            return size;
+        }
+
+        // Zeile der Stadt "a" in den ältesten Platz laden
+        private float[] load(int a) {
+            int s = oldest;
+            if (cityOf[s] >= 0)
+                slotOf[cityOf[s]] = -1;
+            if (row[s] == null)
+                row[s] = new float[slotOf.length];
+            float[] r = row[s];
+            for (int b = 0; b < r.length; ++b)
+                r[b] = compute(a, b);
+            cityOf[s] = a;
+            slotOf[a] = s;
+            touch(s);
+            return r;
+        }
+
+        // Platz "s" als zuletzt benutzt markieren
+        private void touch(int s) {
+            if (s == newest)
+                return;
+            // Aushängen
+            int n = newer[s], o = older[s];
+            older[n] = o;
+            if (o >= 0)
+                newer[o] = n;
+            else
+                oldest = n;
+            // Vorne einhängen
+            newer[s] = -1;
+            older[s] = newest;
+            newer[newest] = s;
+            newest = s;
+        }
+    } // private static class RowCache
+}
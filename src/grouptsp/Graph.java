@@ -12,14 +12,32 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import javax.swing.JComponent;
 import javax.swing.JViewport;
 import javax.swing.Scrollable;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
+/*
+ * Klasse Graph
+ *
+ * Zeigt den Verlauf mehrerer Werte, ein Pixel je Eintrag. Jeder Plot
+ * hat höchstens "capacity" Einträge in primitiven Feldern. Ist er
+ * voll, werden je zwei benachbarte Einträge zusammengefasst und jeder
+ * neue Eintrag nimmt doppelt so viele Werte auf. Ein Eintrag merkt
+ * sich ersten, letzten, kleinsten und größten Wert, so bleiben
+ * Ausreißer sichtbar. Speicher und Zeichenaufwand hängen damit nur
+ * von der Kapazität ab, nicht von der Laufzeit.
+ *
+ * Alle Plots sollten gleich viele Werte erhalten, sonst werden sie
+ * unterschiedlich zusammengefasst. Am einfachsten werden deshalb
+ * ganze Zeilen (ein Wert je Plot) mit addPlotValues() hinzugefügt.
+ * Größe, Scrollposition und Neuzeichnen werden nur einmal je
+ * Durchlauf des Event-Dispatch-Threads angepasst, egal wie viele
+ * Werte dazugekommen sind.
+ */
 public class Graph extends JComponent implements Scrollable {
 
     /*
@@ -28,23 +46,34 @@ public class Graph extends JComponent implements Scrollable {
 
     private static final int HEIGHT    = 150,
                              LINE_DIST = 50,
-                             UNIT_INCR = 25;
+                             UNIT_INCR = 25,
+                             CAPACITY  = 4096;
 
     /*
      * Private Felder
      */
 
-    private List  colors, plots;
+    private List  plots;
     private float yMax, yMin;
     private int   width;
+    private final int capacity;
+    private boolean resizePending;
 
     /*
-     * Konstruktor
+     * Konstruktoren
      */
 
     public Graph() {
-        colors = new ArrayList();
+        this(CAPACITY);
+    }
+
+    // "capacity": höchste Anzahl der Einträge (Pixel) je Plot
+    public Graph(int capacity) {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Kapazität zu klein");
+        this.capacity = capacity & ~1;
         plots = new ArrayList();
+        setPreferredSize(new Dimension(0, HEIGHT));
         resetPlots();
     }
 
@@ -53,34 +82,40 @@ public class Graph extends JComponent implements Scrollable {
      */
 
     public void createPlot(int i, Color color) {
-        colors.add(i, color);
-        plots.add(i, new ArrayList());
+        plots.add(i, new Plot(color, capacity));
     }
 
     public void addPlotValue(int i, float value) {
-        List values = (List)plots.get(i);
-        values.add(new Float(value));
+        add(i, value);
+        scheduleResize();
+    }
 
-        // Neue Breite?
-        if (values.size() > width)
-            width = values.size();
+    // Eine Zeile: "row[i]" ist der neue Wert des Plots "i"
+    public void addPlotValues(float[] row) {
+        for (int i = 0; i < row.length; ++i)
+            add(i, row[i]);
+        scheduleResize();
+    }
 
-        // Neuer minimaler bzw. maximaler y-Wert?
-        if (value > yMax)
-            yMax = value;
-        else if (value < yMin)
-            yMin = value;
+    // Mehrere Zeilen auf einmal
+    public void addPlotValues(float[][] rows) {
+        for (int r = 0; r < rows.length; ++r) {
+            for (int i = 0; i < rows[r].length; ++i)
+                add(i, rows[r][i]);
+        }
+        scheduleResize();
+    }
 
-        resizeAndRepaint();
+    public int getCapacity() {
+        return capacity;
     }
 
     public void resetPlots() {
-        for (Iterator i = plots.iterator(); i.hasNext(); )
-            ((List)i.next()).clear();
+        for (int i = 0; i < plots.size(); ++i)
+            ((Plot)plots.get(i)).clear();
         yMin = 0;
         yMax = 1;
-        width = 0;
-        resizeAndRepaint();
+        scheduleResize();
     }
 
     /*
@@ -128,7 +163,7 @@ public class Graph extends JComponent implements Scrollable {
     }
 
     public boolean getScrollableTracksViewportWidth() {
-        // Gre an Viewport anpassen, wenn Graph kleiner als Viewport.
+        // Größe an Viewport anpassen, wenn Graph kleiner als Viewport.
         if (getParent() instanceof JViewport)
             return (((JViewport)getParent()).getWidth() >
                     getPreferredSize().width);
@@ -136,7 +171,7 @@ public class Graph extends JComponent implements Scrollable {
     }
 
     public boolean getScrollableTracksViewportHeight() {
-        // Gre an Viewport anpassen, wenn Graph kleiner als Viewport.
+        // Größe an Viewport anpassen, wenn Graph kleiner als Viewport.
         if (getParent() instanceof JViewport)
             return (((JViewport)getParent()).getHeight() >
                     getPreferredSize().height);
@@ -147,7 +182,35 @@ public class Graph extends JComponent implements Scrollable {
      * Private Methoden
      */
 
+    private void add(int i, float value) {
+        ((Plot)plots.get(i)).add(value);
+
+        // Neuer minimaler bzw. maximaler y-Wert?
+        if (value > yMax)
+            yMax = value;
+        else if (value < yMin)
+            yMin = value;
+    }
+
+    // resizeAndRepaint() einmal für alle bis dahin neuen Werte
+    private void scheduleResize() {
+        if (resizePending)
+            return;
+        resizePending = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                resizePending = false;
+                resizeAndRepaint();
+            }
+        });
+    }
+
     private void resizeAndRepaint() {
+        // Neue Breite? (Nach dem Zusammenfassen auch schmaler)
+        width = 0;
+        for (int i = 0; i < plots.size(); ++i)
+            width = Math.max(width, ((Plot)plots.get(i)).count);
+
         // Wenn der Graph in einem ScrollPane ist,
         // wird automatisch gescrollt.
         if (getParent() instanceof JViewport) {
@@ -167,16 +230,78 @@ public class Graph extends JComponent implements Scrollable {
     private void drawPlot(int i, Graphics graph,
                           Rectangle bounds,
                           float heightScale) {
-        graph.setColor((Color)colors.get(i));
-        List values = (List)plots.get(i);
-        for (int x = bounds.x;
-             x < bounds.x + bounds.width && x + 1 < values.size(); ++x) {
-            float y1 = ((Float)values.get(x)).floatValue();
-            float y2 = ((Float)values.get(x + 1)).floatValue();
-            graph.drawLine(x,
-                           bounds.height - (int)(y1 * heightScale),
-                           x + 1,
-                           bounds.height - (int)(y2 * heightScale));
+        Plot plot = (Plot)plots.get(i);
+        graph.setColor(plot.color);
+        int end = Math.min(bounds.x + bounds.width, plot.count);
+        for (int x = bounds.x; x < end; ++x) {
+            // Spanne des Eintrags, dann Verbindung zum nächsten
+            if (plot.min[x] != plot.max[x])
+                graph.drawLine(x, bounds.height - (int)(plot.min[x] * heightScale),
+                               x, bounds.height - (int)(plot.max[x] * heightScale));
+            if (x + 1 < plot.count)
+                graph.drawLine(x,
+                               bounds.height - (int)(plot.last[x] * heightScale),
+                               x + 1,
+                               bounds.height - (int)(plot.first[x + 1] * heightScale));
         }
     }
+
+    /*
+     * Werte eines Plots
+     */
+
+    private static class Plot {
+        private final Color color;
+        private final float first[], last[], min[], max[];
+        private int count,          // Benutzte Einträge
+                    bucketSize,     // Werte je Eintrag
+                    pending;        // Werte im letzten Eintrag
+
+        public Plot(Color color, int capacity) {
+            this.color = color;
+            first = new float[capacity];
+            last = new float[capacity];
+            min = new float[capacity];
+            max = new float[capacity];
+            clear();
+        }
+
+        public void clear() {
+            count = 0;
+            bucketSize = 1;
+            pending = 0;
+        }
+
+        public void add(float value) {
+            if (pending == 0) {
+                // Neuer Eintrag, vorher bei Bedarf zusammenfassen
+                if (count == first.length)
+                    halve();
+                first[count] = last[count] = min[count] = max[count] = value;
+                ++count;
+            } else {
+                int x = count - 1;
+                last[x] = value;
+                if (value < min[x])
+                    min[x] = value;
+                else if (value > max[x])
+                    max[x] = value;
+            }
+            if (++pending == bucketSize)
+                pending = 0;
+        }
+
+        // Je zwei Einträge zusammenfassen
+        private void halve() {
+            for (int x = 0; 2 * x < count; ++x) {
+                int a = 2 * x, b = 2 * x + 1;
+                first[x] = first[a];
+                last[x] = last[b];
+                min[x] = Math.min(min[a], min[b]);
+                max[x] = Math.max(max[a], max[b]);
+            }
+            count /= 2;
+            bucketSize *= 2;
+        }
+    } // private static class Plot
 }
@@ -0,0 +1,399 @@
+/*
+ * KdTree.java - Räumlicher Index über den Städten
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse KdTree
+ *
+ * 2-d-Baum über den Koordinaten der Städte. Die Städte werden im
+ * Feld "index" so umgeordnet, dass jeder Knoten einen
+ * zusammenhängenden Bereich belegt. Blätter enthalten höchstens
+ * LEAF_SIZE Städte. Die Koordinaten werden zusätzlich in dieser
+ * Reihenfolge gehalten, damit Suchen fortlaufend im Speicher lesen.
+ */
+public class KdTree {
+
+    /*
+     * Konstanten
+     */
+
+    private static final int LEAF_SIZE = 8;
+
+    /*
+     * Private Felder
+     */
+
+    private final float x[], y[];
+    private final int   index[];               // Städte in Baumreihenfolge
+    private final float px[], py[];            // Koordinaten in Baumreihenfolge
+    private final int   lo[], hi[],            // Bereich in "index"
+                        left[], right[];       // Kinder (-1 = Blatt)
+    private final float minX[], maxX[],        // Begrenzungsrechteck
+                        minY[], maxY[];
+    private int numNodes;
+
+    /*
+     * Konstruktor
+     */
+
+    public KdTree(float[] x, float[] y) {
+        this.x = x;
+        this.y = y;
+        int n = x.length;
+        index = new int[n];
+        for (int i = 0; i < n; ++i)
+            index[i] = i;
+
+        // Blätter haben mindestens LEAF_SIZE / 2 Städte
+        int capacity = 2 * (n / (LEAF_SIZE / 2) + 1);
+        lo = new int[capacity];
+        hi = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        minX = new float[capacity];
+        maxX = new float[capacity];
+        minY = new float[capacity];
+        maxY = new float[capacity];
+        if (n > 0)
+            build(0, n);
+
+        px = new float[n];
+        py = new float[n];
+        for (int i = 0; i < n; ++i) {
+            px[i] = x[index[i]];
+            py[i] = y[index[i]];
+        }
+    }
+
+    /*
+     * Kandidatenlisten: Die "k" nächsten Nachbarn jeder Stadt,
+     * aufsteigend nach Abstand. Die Nachbarn der Stadt "c" stehen an
+     * den Stellen c * k bis c * k + k - 1. Ist k größer als n - 1,
+     * wird es auf n - 1 gekürzt.
+     */
+
+    public int[] neighbors(int k) {
+        int n = x.length;
+        k = Math.max(0, Math.min(k, n - 1));
+        int[] result = new int[n * k];
+        if (k == 0)
+            return result;
+
+        Heap heap = new Heap(k);
+        for (int i = 0; i < n; ++i) {
+            heap.size = 0;
+            nearest(0, px[i], py[i], i, heap);
+            // Maximum jeweils ans Ende tauschen (Heapsort)
+            int base = index[i] * k;
+            while (heap.size > 0) {
+                result[base + heap.size - 1] = index[heap.city[0]];
+                heap.poll();
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Euklidischer minimaler Spannbaum (Boruvka)
+     *
+     * In jeder Runde sucht jede Stadt die nächste Stadt einer anderen
+     * Komponente. Teilbäume, deren Städte alle zur eigenen Komponente
+     * gehören oder die weiter entfernt sind als die bisher beste Kante
+     * der Komponente, werden übersprungen. Es sind höchstens log(n)
+     * Runden nötig. Rückgabe sind die Längen der n - 1 Kanten.
+     *
+     * Der Abstand zur nächsten fremden Stadt kann nur wachsen, weil
+     * Komponenten nur verschmelzen. Deshalb wird er pro Stadt gemerkt:
+     * Ist die gemerkte Stadt noch fremd, ist sie weiterhin die nächste,
+     * sonst ist der Abstand eine untere Schranke für die neue Suche.
+     *
+     * Gerechnet wird auf den Positionen in Baumreihenfolge.
+     */
+
+    public float[] spanningTree() {
+        int n = x.length;
+        float[] edges = new float[Math.max(0, n - 1)];
+        int[] parent = new int[n],
+              label = new int[n],
+              nodeLabel = new int[numNodes],
+              bestTo = new int[n],
+              nearTo = new int[n];
+        float[] bestDist = new float[n],
+                nearDist = new float[n];
+        for (int i = 0; i < n; ++i) {
+            parent[i] = i;
+            nearTo[i] = -1;
+        }
+
+        Query query = new Query();
+        int numEdges = 0;
+        while (numEdges < n - 1) {
+            // Komponenten beschriften
+            for (int i = 0; i < n; ++i) {
+                label[i] = find(parent, i);
+                bestDist[i] = Float.POSITIVE_INFINITY;
+                bestTo[i] = -1;
+            }
+            labelNodes(0, label, nodeLabel);
+
+            // Gemerkte Kanten, die noch aus der Komponente führen
+            for (int c = 0; c < n; ++c) {
+                int comp = label[c];
+                if (nearTo[c] >= 0 && label[nearTo[c]] != comp &&
+                    nearDist[c] < bestDist[comp]) {
+                    bestDist[comp] = nearDist[c];
+                    bestTo[comp] = nearTo[c];
+                }
+            }
+
+            // Übrige Städte nur durchsuchen, wenn sie die bisher
+            // kürzeste ausgehende Kante ihrer Komponente schlagen können
+            for (int c = 0; c < n; ++c) {
+                int comp = label[c];
+                if (nearDist[c] >= bestDist[comp] ||
+                    (nearTo[c] >= 0 && label[nearTo[c]] != comp))
+                    continue;
+                query.city = -1;
+                query.dist2 = bestDist[comp];
+                nearestOther(0, px[c], py[c], comp, label, nodeLabel, query);
+                nearTo[c] = query.city;
+                nearDist[c] = query.dist2;
+                if (query.city >= 0) {
+                    bestDist[comp] = query.dist2;
+                    bestTo[comp] = query.city;
+                }
+            }
+
+            // Kanten hinzufügen
+            for (int c = 0; c < n; ++c) {
+                if (label[c] != c || bestTo[c] < 0)
+                    continue;
+                int a = find(parent, c), b = find(parent, bestTo[c]);
+                if (a != b) {
+                    parent[a] = b;
+                    edges[numEdges++] = (float)Math.sqrt(bestDist[c]);
+                }
+            }
+        }
+        return edges;
+    }
+
+    /*
+     * Private Methoden
+     */
+
+    // Knoten für den Bereich "from" bis "to" aufbauen
+    private int build(int from, int to) {
+        int node = numNodes++;
+        lo[node] = from;
+        hi[node] = to;
+
+        float x0 = Float.POSITIVE_INFINITY, x1 = Float.NEGATIVE_INFINITY,
+              y0 = Float.POSITIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; ++i) {
+            int c = index[i];
+            x0 = Math.min(x0, x[c]);
+            x1 = Math.max(x1, x[c]);
+            y0 = Math.min(y0, y[c]);
+            y1 = Math.max(y1, y[c]);
+        }
+        minX[node] = x0;
+        maxX[node] = x1;
+        minY[node] = y0;
+        maxY[node] = y1;
+
+        if (to - from <= LEAF_SIZE) {
+            left[node] = right[node] = -1;
+            return node;
+        }
+
+        // An der längeren Seite im Median teilen
+        int mid = (from + to) >>> 1;
+        select(from, to, mid, (x1 - x0 >= y1 - y0) ? x : y);
+        left[node] = build(from, mid);
+        right[node] = build(mid, to);
+        return node;
+    }
+
+    // "index" so teilen, dass an Position "k" das k-kleinste Element steht
+    private void select(int from, int to, int k, float[] key) {
+        int l = from, r = to - 1;
+        while (r > l) {
+            float pivot = key[index[(l + r) >>> 1]];
+            int i = l, j = r;
+            while (i <= j) {
+                while (key[index[i]] < pivot)
+                    ++i;
+                while (key[index[j]] > pivot)
+                    --j;
+                if (i <= j) {
+                    int c = index[i];
+                    index[i++] = index[j];
+                    index[j--] = c;
+                }
+            }
+            if (k <= j)
+                r = j;
+            else if (k >= i)
+                l = i;
+            else
+                break;
+        }
+    }
+
+    // Quadrat des Abstands des Punkts zum Rechteck des Knotens
+    private float boxDist2(int node, float qx, float qy) {
+        float dx = Math.max(0, Math.max(minX[node] - qx, qx - maxX[node])),
+              dy = Math.max(0, Math.max(minY[node] - qy, qy - maxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    // Komponente des Knotens (-1, wenn gemischt)
+    private int labelNodes(int node, int[] label, int[] nodeLabel) {
+        int l;
+        if (left[node] < 0) {
+            l = label[lo[node]];
+            for (int i = lo[node] + 1; i < hi[node] && l >= 0; ++i) {
+                if (label[i] != l)
+                    l = -1;
+            }
+        } else {
+            l = labelNodes(left[node], label, nodeLabel);
+            if (labelNodes(right[node], label, nodeLabel) != l)
+                l = -1;
+        }
+        return (nodeLabel[node] = l);
+    }
+
+    // Nächste Position zum Punkt außerhalb der Komponente "comp"
+    private void nearestOther(int node, float qx, float qy, int comp,
+                              int[] label, int[] nodeLabel, Query query) {
+        if (nodeLabel[node] == comp || boxDist2(node, qx, qy) >= query.dist2)
+            return;
+        if (left[node] < 0) {
+            for (int i = lo[node]; i < hi[node]; ++i) {
+                if (label[i] == comp)
+                    continue;
+                float dx = px[i] - qx, dy = py[i] - qy,
+                      dist2 = dx * dx + dy * dy;
+                if (dist2 < query.dist2) {
+                    query.dist2 = dist2;
+                    query.city = i;
+                }
+            }
+            return;
+        }
+        // Näheres Kind zuerst besuchen
+        int near = left[node], far = right[node];
+        if (boxDist2(far, qx, qy) < boxDist2(near, qx, qy)) {
+            near = right[node];
+            far = left[node];
+        }
+        nearestOther(near, qx, qy, comp, label, nodeLabel, query);
+        nearestOther(far, qx, qy, comp, label, nodeLabel, query);
+    }
+
+    // Die nächsten Positionen zum Punkt (ohne "self") im Heap sammeln
+    private void nearest(int node, float qx, float qy, int self, Heap heap) {
+        if (heap.size == heap.city.length &&
+            boxDist2(node, qx, qy) >= heap.dist2[0])
+            return;
+        if (left[node] < 0) {
+            for (int i = lo[node]; i < hi[node]; ++i) {
+                if (i == self)
+                    continue;
+                float dx = px[i] - qx, dy = py[i] - qy;
+                heap.offer(i, dx * dx + dy * dy);
+            }
+            return;
+        }
+        // Näheres Kind zuerst besuchen
+        int near = left[node], far = right[node];
+        if (boxDist2(far, qx, qy) < boxDist2(near, qx, qy)) {
+            near = right[node];
+            far = left[node];
+        }
+        nearest(near, qx, qy, self, heap);
+        nearest(far, qx, qy, self, heap);
+    }
+
+    // Union-Find mit Pfadhalbierung
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    /*
+     * Zustand einer Suche
+     */
+
+    private static class Query {
+        int   city;
+        float dist2;
+    } // private static class Query
+
+    /*
+     * Max-Heap begrenzter Größe für die k nächsten Nachbarn
+     */
+
+    private static class Heap {
+        final int   city[];
+        final float dist2[];
+        int size;
+
+        Heap(int capacity) {
+            city = new int[capacity];
+            dist2 = new float[capacity];
+        }
+
+        void offer(int c, float d) {
+            if (size < city.length) {
+                // Hinten anfügen und aufsteigen lassen
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (dist2[parent] >= d)
+                        break;
+                    city[i] = city[parent];
+                    dist2[i] = dist2[parent];
+                    i = parent;
+                }
+                city[i] = c;
+                dist2[i] = d;
+            } else if (d < dist2[0])
+                siftDown(c, d);
+        }
+
+        // Maximum entfernen
+        void poll() {
+            --size;
+            if (size > 0)
+                siftDown(city[size], dist2[size]);
+        }
+
+        // Wurzel durch (c, d) ersetzen und absinken lassen
+        private void siftDown(int c, float d) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && dist2[child + 1] > dist2[child])
+                    ++child;
+                if (dist2[child] <= d)
+                    break;
+                city[i] = city[child];
+                dist2[i] = dist2[child];
+                i = child;
+            }
+            city[i] = c;
+            dist2[i] = d;
+        }
+    } // private static class Heap
+}
@@ -0,0 +1,244 @@
+/*
+ * LocalSearch.java - Lokale Verbesserung einzelner Touren
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse LocalSearch
+ *
+ * Verbessert eine Tour mit 2-opt und Or-opt (Wege aus bis zu
+ * MAX_SEGMENT Städten, auch umgedreht), bis kein Schritt die Tour
+ * mehr verkürzt. Es werden nur Schritte zu den NUM_NEIGHBORS
+ * nächsten Städten derselben Tour geprüft, und Städte, bei denen
+ * nichts gefunden wurde, werden erst wieder geprüft, wenn sich eine
+ * ihrer Kanten ändert ("Don't-Look-Bits", hier als Warteschlange der
+ * aktiven Städte).
+ *
+ * Eine Instanz bearbeitet nur die Städte ihrer Tour. Verschiedene
+ * Touren desselben TourStore können deshalb gleichzeitig mit je einer
+ * eigenen Instanz verbessert werden.
+ */
+public class LocalSearch {
+
+    /*
+     * Konstanten
+     */
+
+    private static final int    NUM_NEIGHBORS = 8;
+    private static final int    MAX_SEGMENT   = 3;
+    private static final double EPSILON       = 1e-6;
+
+    /*
+     * Private Felder
+     */
+
+    private final TourStore      tours;
+    private final DistanceOracle oracle;
+    private final float          x[], y[];
+    private final int            index[];   // Stadt -> lokale Nummer
+
+    private int     city[];                  // lokale Nummer -> Stadt
+    private int     near[], numNear;         // Kandidaten (lokale Nummern)
+    private int     queue[], queueHead, queueSize;
+    private boolean queued[];
+
+    /*
+     * Konstruktor
+     *
+     * "index" hat einen Eintrag je Stadt und darf von Instanzen für
+     * verschiedene Touren geteilt werden.
+     */
+
+    public LocalSearch(TourStore tours, DistanceOracle oracle,
+                       float[] x, float[] y, int[] index) {
+        this.tours = tours;
+        this.oracle = oracle;
+        this.x = x;
+        this.y = y;
+        this.index = index;
+    }
+
+    /*
+     * Tour "t" verbessern, liefert die Verkürzung
+     */
+
+    public double improve(int t) {
+        int m = tours.size(t);
+        if (m < 4)
+            return 0;
+
+        // Kandidatenlisten innerhalb der Tour
+        city = new int[m];
+        tours.toArray(t, city);
+        float[] cx = new float[m], cy = new float[m];
+        for (int i = 0; i < m; ++i) {
+            cx[i] = x[city[i]];
+            cy[i] = y[city[i]];
+            index[city[i]] = i;
+        }
+        numNear = Math.min(NUM_NEIGHBORS, m - 1);
+        near = new KdTree(cx, cy).neighbors(numNear);
+
+        // Anfangs sind alle Städte aktiv
+        queue = new int[m];
+        queued = new boolean[m];
+        queueHead = 0;
+        queueSize = 0;
+        for (int i = 0; i < m; ++i)
+            push(city[i]);
+
+        double gain = 0;
+        while (queueSize > 0) {
+            int a = pop();
+            double g = twoOpt(a);
+            if (g <= 0)
+                g = orOpt(a);
+            if (g > 0) {
+                gain += g;
+                push(a);
+            }
+        }
+
+        city = near = queue = null;
+        queued = null;
+        return gain;
+    }
+
+    /*
+     * 2-opt: neue Kante (a, c) zu einem Kandidaten "c"
+     */
+
+    private double twoOpt(int a) {
+        int base = index[a] * numNear;
+        for (int dir = 0; dir < 2; ++dir) {
+            // dir = 0: Nachfolger von "a", dir = 1: Vorgänger
+            int na = (dir == 0 ? tours.next(a) : tours.prev(a));
+            double removed = distance(a, na);
+            for (int i = 0; i < numNear; ++i) {
+                int c = city[near[base + i]];
+                double g1 = removed - distance(a, c);
+                if (g1 <= EPSILON)
+                    break;
+                int nc = (dir == 0 ? tours.next(c) : tours.prev(c));
+                if (c == na || nc == a)
+                    continue;
+                double gain = g1 + distance(c, nc) - distance(na, nc);
+                if (gain > EPSILON) {
+                    if (dir == 0)
+                        tours.twoOpt(a, c);
+                    else
+                        tours.twoOpt(na, nc);
+                    push(na);
+                    push(c);
+                    push(nc);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Or-opt: Weg s..e (mit "a" als Anfang oder Ende) neben einen
+     * Kandidaten von "a" legen
+     */
+
+    private double orOpt(int a) {
+        int m = city.length, base = index[a] * numNear;
+        for (int len = 1; len <= MAX_SEGMENT && len + 3 <= m; ++len) {
+            for (int end = 0; end < (len == 1 ? 1 : 2); ++end) {
+                // end = 0: "a" ist Anfang des Wegs, end = 1: Ende
+                int s = a, e = a;
+                for (int i = 1; i < len; ++i) {
+                    if (end == 0)
+                        e = tours.next(e);
+                    else
+                        s = tours.prev(s);
+                }
+                int p = tours.prev(s), n = tours.next(e);
+                double removed = distance(p, s) + distance(e, n) - distance(p, n);
+                if (removed <= EPSILON)
+                    continue;
+
+                for (int i = 0; i < numNear; ++i) {
+                    int c = city[near[base + i]];
+                    if (removed - distance(a, c) <= EPSILON)
+                        break;
+                    if (inSegment(c, s, len))
+                        continue;
+
+                    // "a" neben "c", einmal hinter und einmal vor "c"
+                    double gain;
+                    if (c != p) {
+                        int nc = tours.next(c);
+                        int first = (end == 0 ? s : e), last = (end == 0 ? e : s);
+                        gain = removed - (distance(c, first) + distance(last, nc) -
+                                          distance(c, nc));
+                        if (gain > EPSILON) {
+                            tours.moveSegment(s, e, c, end != 0);
+                            pushMove(p, n, s, e, c, nc);
+                            return gain;
+                        }
+                    }
+                    if (c != n) {
+                        int pc = tours.prev(c);
+                        int first = (end == 0 ? e : s), last = (end == 0 ? s : e);
+                        gain = removed - (distance(pc, first) + distance(last, c) -
+                                          distance(pc, c));
+                        if (gain > EPSILON) {
+                            tours.moveSegment(s, e, pc, end == 0);
+                            pushMove(p, n, s, e, pc, c);
+                            return gain;
+                        }
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Private Hilfsmethoden
+     */
+
+    // Liegt "c" im Weg aus "len" Städten ab "s"?
+    private boolean inSegment(int c, int s, int len) {
+        for (int i = 0; i < len; ++i, s = tours.next(s)) {
+            if (s == c)
+                return true;
+        }
+        return false;
+    }
+
+    private void pushMove(int p, int n, int s, int e, int c, int d) {
+        push(p);
+        push(n);
+        push(s);
+        push(e);
+        push(c);
+        push(d);
+    }
+
+    // Stadt aktivieren (Don't-Look-Bit löschen)
+    private void push(int c) {
+        int i = index[c];
+        if (queued[i])
+            return;
+        queued[i] = true;
+        queue[(queueHead + queueSize++) % queue.length] = i;
+    }
+
+    private int pop() {
+        int i = queue[queueHead];
+        queueHead = (queueHead + 1) % queue.length;
+        --queueSize;
+        queued[i] = false;
+        return city[i];
+    }
+
+    private double distance(int a, int b) {
+        return oracle.distance(a, b);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * MappedMatrix.java - Abstände aus einer Matrixdatei außerhalb des Heaps
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/*
+ * Klasse MappedMatrix
+ *
+ * Abstände aus einer vorberechneten Matrix, z.B. Fahrzeiten in einem
+ * Straßennetz. Die Datei wird nur gelesen und in Stücken zu je
+ * 2^CHUNK_SHIFT Bytes in den Speicher abgebildet, so belegt auch eine
+ * Matrix mit 30000 x 30000 Einträgen keinen Platz im Heap. Aufbau
+ * (little-endian):
+ *
+ *   Bytes 0-7    "GTSPDIST"
+ *   Bytes 8-11   int32: Anzahl der Städte n
+ *   Byte  12     Form: 0 = FULL (n x n, zeilenweise),
+ *                      1 = UPPER (oberes Dreieck ohne Diagonale,
+ *                          zeilenweise, n * (n - 1) / 2 Einträge)
+ *   Byte  13     Kodierung: 0 = FLOAT32, 1 = UINT16 (Wert * Faktor)
+ *   Byte  14     Bit 0: Koordinaten folgen, Bit 1: nicht symmetrisch
+ *                (nur bei FULL)
+ *   Bytes 16-19  float32: Faktor für UINT16
+ *   Bytes 20-31  frei (0)
+ *   danach       falls Bit 0: n float32 x, dann n float32 y
+ *   danach       die Einträge (nicht negativ)
+ *
+ * Der Löser dreht Wege um und braucht deshalb symmetrische Abstände.
+ * Bei nicht symmetrischen Matrizen liefert distance() den Mittelwert
+ * beider Richtungen, getDirected() den Eintrag selbst.
+ *
+ * Die Koordinaten dienen nur den Kandidatenlisten, den Startlösungen
+ * und der Anzeige. Fehlen sie, werden sie mit FastMap aus den
+ * Abständen zu je zwei weit entfernten Pivotstädten geschätzt.
+ */
+public class MappedMatrix extends DistanceOracle {
+
+    /*
+     * Formen und Kodierungen
+     */
+
+    public static final int FULL  = 0,
+                            UPPER = 1;
+
+    public static final int FLOAT32 = 0,
+                            UINT16  = 1;
+
+    /*
+     * Konstanten
+     */
+
+    private static final String MAGIC = "GTSPDIST";
+    private static final int    HEADER_SIZE = 32;
+    private static final int    COORDINATES = 1,
+                                ASYMMETRIC  = 2;
+    private static final int    CHUNK_SHIFT = 30;
+    private static final long   CHUNK_MASK  = (1L << CHUNK_SHIFT) - 1;
+
+    /*
+     * Private Felder
+     */
+
+    private final ByteBuffer chunk[];      // Abgebildete Stücke der Datei
+    private final long    dataOffset;
+    private final int     size;            // Städte in der Datei
+    private final int     layout, encoding;
+    private final boolean symmetric;
+    private final float   scale;
+    private final int     city[];          // Stadt -> Nummer in der Datei (null = gleich)
+
+    /*
+     * Konstruktor und Erzeugungsmethode
+     */
+
+    private MappedMatrix(float[] x, float[] y, ByteBuffer[] chunk,
+                         long dataOffset, int size, int layout, int encoding,
+                         boolean symmetric, float scale, int[] city) {
+        super(x, y);
+        this.chunk = chunk;
+        this.dataOffset = dataOffset;
+        this.size = size;
+        this.layout = layout;
+        this.encoding = encoding;
+        this.symmetric = symmetric;
+        this.scale = scale;
+        this.city = city;
+    }
+
+    public static MappedMatrix open(String file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuffer[] chunk;
+        long length;
+        try {
+            FileChannel channel = raf.getChannel();
+            length = channel.size();
+            chunk = new ByteBuffer[(int)((length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunk.length; ++i) {
+                long start = (long)i << CHUNK_SHIFT;
+                chunk[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                       Math.min(1L << CHUNK_SHIFT, length - start))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } finally {
+            raf.close();
+        }
+
+        // Kopf prüfen
+        if (length < HEADER_SIZE)
+            throw new IOException(file + ": Keine Matrixdatei");
+        ByteBuffer header = chunk[0];
+        for (int i = 0; i < MAGIC.length(); ++i) {
+            if (header.get(i) != MAGIC.charAt(i))
+                throw new IOException(file + ": Keine Matrixdatei");
+        }
+        int n = header.getInt(8),
+            layout = header.get(12),
+            encoding = header.get(13),
+            flags = header.get(14);
+        float scale = (encoding == UINT16 ? header.getFloat(16) : 1);
+        if (n < 1)
+            throw new IOException(file + ": Ungültige Anzahl der Städte: " + n);
+        if (layout != FULL && layout != UPPER)
+            throw new IOException(file + ": Ungültige Form: " + layout);
+        if (encoding != FLOAT32 && encoding != UINT16)
+            throw new IOException(file + ": Ungültige Kodierung: " + encoding);
+        if (layout == UPPER && (flags & ASYMMETRIC) != 0)
+            throw new IOException(file + ": Dreiecksmatrix kann nicht unsymmetrisch sein");
+        if (!(scale > 0) || Float.isInfinite(scale))
+            throw new IOException(file + ": Ungültiger Faktor: " + scale);
+
+        long dataOffset = HEADER_SIZE +
+            ((flags & COORDINATES) != 0 ? 8L * n : 0);
+        long entries = (layout == FULL ? (long)n * n : (long)n * (n - 1) / 2);
+        long expected = dataOffset + entries * (encoding == FLOAT32 ? 4 : 2);
+        if (length != expected)
+            throw new IOException(file + ": Falsche Dateigröße " + length +
+                                  ", erwartet " + expected);
+
+        float[] x = new float[n], y = new float[n];
+        MappedMatrix matrix = new MappedMatrix(x, y, chunk, dataOffset, n, layout,
+                                               encoding, (flags & ASYMMETRIC) == 0,
+                                               scale, null);
+        if ((flags & COORDINATES) != 0) {
+            for (int i = 0; i < n; ++i) {
+                x[i] = header.getFloat(HEADER_SIZE + 4 * i);
+                y[i] = header.getFloat(HEADER_SIZE + 4 * (n + i));
+            }
+        } else
+            matrix.fastMap(x, y);
+        return matrix;
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public float distance(int a, int b) {
+        // Alle Zugriffe sind Treffer und werden nicht gezählt
+        if (a == b)
+            return 0;
+        if (city != null) {
+            a = city[a];
+            b = city[b];
+        }
+        if (layout == UPPER) {
+            if (a > b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            return get((long)a * (2L * size - a - 1) / 2 + (b - a - 1));
+        }
+        float d = get((long)a * size + b);
+        return (symmetric ? d : (d + get((long)b * size + a)) / 2);
+    }
+
+    // Eintrag für die Richtung von "a" nach "b"
+    public float getDirected(int a, int b) {
+        if (layout == UPPER || a == b)
+            return distance(a, b);
+        if (city != null) {
+            a = city[a];
+            b = city[b];
+        }
+        return get((long)a * size + b);
+    }
+
+    // Die Abbildung wird nur gelesen und kann geteilt werden
+    public DistanceOracle fork() {
+        return this;
+    }
+
+    // Abgebildete Bytes (außerhalb des Heaps)
+    public long getSize() {
+        long total = 0;
+        for (int i = 0; i < chunk.length; ++i)
+            total += chunk[i].capacity();
+        return total;
+    }
+
+    public boolean isDense() {
+        return true;
+    }
+
+    public boolean isEuclidean() {
+        return false;
+    }
+
+    public float getHitRate() {
+        return 1;
+    }
+
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public int getLayout() {
+        return layout;
+    }
+
+    public int getEncoding() {
+        return encoding;
+    }
+
+    // Dieselbe Datei, die Stadt "i" ist die bisherige Stadt "order[i]"
+    public DistanceOracle renumber(int[] order, float[] x, float[] y) {
+        int[] renamed = new int[order.length];
+        for (int i = 0; i < order.length; ++i)
+            renamed[i] = (city != null ? city[order[i]] : order[i]);
+        return new MappedMatrix(x, y, chunk, dataOffset, size, layout,
+                                encoding, symmetric, scale, renamed);
+    }
+
+    /*
+     * Private Methoden
+     */
+
+    // Eintrag "i" hinter dem Kopf
+    private float get(long i) {
+        if (encoding == FLOAT32) {
+            long offset = dataOffset + 4 * i;
+            return chunk[(int)(offset >>> CHUNK_SHIFT)].getFloat((int)(offset & CHUNK_MASK));
+        }
+        long offset = dataOffset + 2 * i;
+        return (chunk[(int)(offset >>> CHUNK_SHIFT)].getShort((int)(offset & CHUNK_MASK))
+                & 0xffff) * scale;
+    }
+
+    /*
+     * FastMap: Jede Achse verbindet zwei weit entfernte Pivotstädte,
+     * die Koordinate folgt aus den Abständen zu beiden (Kosinussatz).
+     * Die zweite Achse verwendet die Restabstände nach der ersten.
+     * Das kostet nur wenige Durchläufe über n Abstände.
+     */
+
+    private void fastMap(float[] x, float[] y) {
+        axis(x, null);
+        axis(y, x);
+
+        // Kleinste Koordinaten auf 0 schieben
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        for (int i = 0; i < size; ++i) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+        }
+        for (int i = 0; i < size; ++i) {
+            x[i] -= minX;
+            y[i] -= minY;
+        }
+    }
+
+    // Koordinaten einer Achse, "previous" ist die vorige Achse oder null
+    private void axis(float[] out, float[] previous) {
+        int a = farthest(0, previous), b = farthest(a, previous);
+        a = farthest(b, previous);
+        double ab = square(a, b, previous);
+        if (ab <= 0)
+            return;
+        double scaleAb = 1 / (2 * Math.sqrt(ab));
+        for (int i = 0; i < size; ++i)
+            out[i] = (float)((square(a, i, previous) + ab - square(b, i, previous)) * scaleAb);
+    }
+
+    // Am weitesten von "a" entfernte Stadt
+    private int farthest(int a, float[] previous) {
+        int best = a;
+        double bestDistance = -1;
+        for (int i = 0; i < size; ++i) {
+            double d = square(a, i, previous);
+            if (d > bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Quadrat des (Rest-)Abstands, nicht negativ
+    private double square(int a, int b, float[] previous) {
+        double d = distance(a, b);
+        d *= d;
+        if (previous != null) {
+            double p = previous[a] - previous[b];
+            d = Math.max(0, d - p * p);
+        }
+        return d;
+    }
+}
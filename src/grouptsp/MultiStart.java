@@ -0,0 +1,173 @@
+/*
+ * MultiStart.java - Unabhängige Neustarts im ForkJoinPool
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Klasse MultiStart
+ *
+ * Startet ein TSProblem mehrmals von verschiedenen zufälligen
+ * Verteilungen der Städte und optimiert jede Kopie mit dem gleichen
+ * Schrittbudget. Die Neustarts sind unabhängig und laufen parallel in
+ * einem ForkJoinPool. Ergebnis ist die beste Kopie zusammen mit der
+ * Verteilung der Endwerte, die zeigt, wie stark das Ergebnis vom
+ * Startpunkt abhängt.
+ */
+public class MultiStart {
+
+    /*
+     * Private Felder
+     */
+
+    private final TSProblem     base;
+    private final ForkJoinPool  pool;
+
+    /*
+     * Konstruktoren
+     */
+
+    public MultiStart(TSProblem base) {
+        this(base, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MultiStart(TSProblem base, int parallelism) {
+        this.base = base;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /*
+     * Optimierung
+     */
+
+    // "numStarts" Neustarts mit je "steps" Schritten
+    public Result run(int param, int numStarts, int steps) {
+        if (numStarts < 1)
+            throw new IllegalArgumentException("Mindestens ein Neustart");
+
+        // Kandidatenlisten einmal berechnen, alle Kopien teilen sie
+        if (base.isNeighborMoves())
+            base.getNeighbors();
+
+        // Startwerte vorab aus dem Strom von "base" ziehen, damit das
+        // Ergebnis nicht von der Verteilung auf die Threads abhängt
+        long[] seeds = new long[numStarts];
+        for (int i = 0; i < numStarts; ++i)
+            seeds[i] = base.nextSeed();
+
+        TSProblem[] starts = new TSProblem[numStarts];
+        pool.invoke(new Starts(starts, seeds, 0, numStarts, param, steps));
+        return new Result(starts, param);
+    }
+
+    // Threads beenden
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /*
+     * Teilt die Neustarts rekursiv auf, bis einer übrig ist
+     */
+
+    private class Starts extends RecursiveAction {
+        private final TSProblem starts[];
+        private final long seeds[];
+        private final int lo, hi, param, steps;
+
+        public Starts(TSProblem[] starts, long[] seeds,
+                      int lo, int hi, int param, int steps) {
+            this.starts = starts;
+            this.seeds = seeds;
+            this.lo = lo;
+            this.hi = hi;
+            this.param = param;
+            this.steps = steps;
+        }
+
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Starts(starts, seeds, lo, mid, param, steps),
+                          new Starts(starts, seeds, mid, hi, param, steps));
+                return;
+            }
+            TSProblem tsp = new TSProblem(base, seeds[lo]);
+            tsp.randomize();
+            tsp.optimize(param, steps);
+            starts[lo] = tsp;
+        }
+    } // private class Starts
+
+    /*
+     * Ergebnis aller Neustarts
+     */
+
+    public static class Result {
+        private final TSProblem starts[], best;
+        private final float     values[];   // aufsteigend sortiert
+
+        private Result(TSProblem[] starts, int param) {
+            this.starts = starts;
+            values = new float[starts.length];
+            TSProblem b = starts[0];
+            for (int i = 0; i < starts.length; ++i) {
+                values[i] = starts[i].getParameter(param).getValue();
+                if (values[i] < b.getParameter(param).getValue())
+                    b = starts[i];
+            }
+            best = b;
+            Arrays.sort(values);
+        }
+
+        public TSProblem getBest() {
+            return best;
+        }
+
+        public int getNumStarts() {
+            return starts.length;
+        }
+
+        // Kopie des "i"-ten Neustarts (Startwert mit getSeed())
+        public TSProblem getStart(int i) {
+            return starts[i];
+        }
+
+        // Endwerte aller Neustarts, aufsteigend sortiert
+        public float[] getValues() {
+            return values.clone();
+        }
+
+        public float getMin() {
+            return values[0];
+        }
+
+        public float getMax() {
+            return values[values.length - 1];
+        }
+
+        public float getMedian() {
+            int n = values.length;
+            return ((n & 1) != 0 ? values[n / 2] :
+                    (values[n / 2 - 1] + values[n / 2]) / 2);
+        }
+
+        public double getMean() {
+            double sum = 0;
+            for (int i = 0; i < values.length; ++i)
+                sum += values[i];
+            return sum / values.length;
+        }
+
+        public double getStandardDeviation() {
+            double mean = getMean(), sum = 0;
+            for (int i = 0; i < values.length; ++i)
+                sum += (values[i] - mean) * (values[i] - mean);
+            return Math.sqrt(sum / values.length);
+        }
+    } // public static class Result
+}
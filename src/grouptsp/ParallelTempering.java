@@ -0,0 +1,215 @@
+/*
+ * ParallelTempering.java - Replikate auf einer Temperaturleiter
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Klasse ParallelTempering
+ *
+ * Optimiert mehrere Kopien (Replikate) eines TSProblem gleichzeitig,
+ * jede mit einer festen Temperatur einer geometrischen Leiter. Nach
+ * jeder Runde werden benachbarte Temperaturen abwechselnd (gerade und
+ * ungerade Paare) mit der Wahrscheinlichkeit
+ *
+ *   min(1, exp((1/Ti - 1/Tj) * (Ei - Ej)))
+ *
+ * getauscht. So wandern gute Lösungen zu den kalten Temperaturen und
+ * schlechte werden in den heißen wieder aufgelockert.
+ *
+ * Jedes Replikat wird in einem Block nur von einem Thread verändert,
+ * deswegen braucht TSProblem keine Synchronisation.
+ */
+public class ParallelTempering {
+
+    /*
+     * Private Felder
+     */
+
+    private final TSProblem replica[];      // Replikat je Leiterplatz
+    private final float     ladder[];       // Temperatur je Leiterplatz
+    private final int       numSwaps[], numSwapAttempts[];
+    private final ExecutorService executor;
+    private final SplittableRandom random;
+    private int             numRounds;
+
+    /*
+     * Konstruktor
+     */
+
+    public ParallelTempering(TSProblem base, int numReplicas,
+                             float minTemperature, float maxTemperature) {
+        if (numReplicas < 1)
+            throw new IllegalArgumentException("Mindestens ein Replikat");
+
+        // Kandidatenlisten einmal berechnen, alle Kopien teilen sie
+        if (base.isNeighborMoves())
+            base.getNeighbors();
+
+        replica = new TSProblem[numReplicas];
+        ladder = new float[numReplicas];
+        numSwaps = new int[Math.max(numReplicas - 1, 0)];
+        numSwapAttempts = new int[numSwaps.length];
+        // Startwerte aus dem Strom von "base", damit der Lauf wiederholbar ist
+        random = new SplittableRandom(base.nextSeed());
+
+        // Geometrische Leiter von der kältesten zur heißesten Temperatur
+        for (int i = 0; i < numReplicas; ++i) {
+            ladder[i] = (numReplicas == 1 ? minTemperature :
+                         (float)(minTemperature *
+                                 Math.pow(maxTemperature / minTemperature,
+                                          (double)i / (numReplicas - 1))));
+            replica[i] = new TSProblem(base, base.nextSeed());
+            replica[i].setCoolingRate(1);
+            replica[i].setTemperature(ladder[i]);
+        }
+
+        int threads = Math.min(numReplicas,
+                               Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Replica-" + (count++));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /*
+     * Optimierung
+     */
+
+    // "rounds" Runden mit je "steps" Schritten pro Replikat
+    public void optimize(final int param, int rounds, final int steps) {
+        List tasks = new ArrayList(replica.length);
+        for (int i = 0; i < replica.length; ++i) {
+            final TSProblem tsp = replica[i];
+            tasks.add(new Callable() {
+                public Object call() {
+                    tsp.optimize(param, steps);
+                    return null;
+                }
+            });
+        }
+
+        for (int r = 0; r < rounds; ++r) {
+            try {
+                List futures = executor.invokeAll(tasks);
+                for (int i = 0; i < futures.size(); ++i)
+                    ((Future)futures.get(i)).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+            exchange(param);
+            ++numRounds;
+        }
+    }
+
+    // Threads beenden
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    // Replikat mit dem kleinsten Wert des Parameters
+    public TSProblem getBest(int param) {
+        TSProblem best = replica[0];
+        for (int i = 1; i < replica.length; ++i) {
+            if (replica[i].getParameter(param).getValue() <
+                best.getParameter(param).getValue())
+                best = replica[i];
+        }
+        return best;
+    }
+
+    public int getNumTours() {
+        return replica[0].getNumTours();
+    }
+
+    public List getTour(int param, int t) {
+        return getBest(param).getTour(t);
+    }
+
+    public TSProblem.Parameter getParameter(int param) {
+        return getBest(param).getParameter(param);
+    }
+
+    public int getNumParameters() {
+        return replica[0].getNumParameters();
+    }
+
+    public int getNumReplicas() {
+        return replica.length;
+    }
+
+    // Replikat auf Leiterplatz "i" (0 = kälteste Temperatur)
+    public TSProblem getReplica(int i) {
+        return replica[i];
+    }
+
+    public float getTemperature(int i) {
+        return ladder[i];
+    }
+
+    public int getNumRounds() {
+        return numRounds;
+    }
+
+    // Angenommene Vertauschungen zwischen Leiterplatz "i" und "i + 1"
+    public int getNumSwaps(int i) {
+        return numSwaps[i];
+    }
+
+    public int getNumSwapAttempts(int i) {
+        return numSwapAttempts[i];
+    }
+
+    public long getNumSteps() {
+        long steps = 0;
+        for (int i = 0; i < replica.length; ++i)
+            steps += replica[i].getNumSteps();
+        return steps;
+    }
+
+    /*
+     * Private Methoden
+     */
+
+    // Benachbarte Replikate tauschen, abwechselnd gerade und ungerade Paare
+    private void exchange(int param) {
+        for (int i = numRounds & 1; i + 1 < replica.length; i += 2) {
+            ++numSwapAttempts[i];
+            double e1 = replica[i].getParameter(param).getValue(),
+                   e2 = replica[i + 1].getParameter(param).getValue();
+            double delta = (1.0 / ladder[i] - 1.0 / ladder[i + 1]) * (e1 - e2);
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta)) {
+                // Die Temperatur bleibt am Leiterplatz, die Lösung wandert
+                TSProblem tsp = replica[i];
+                replica[i] = replica[i + 1];
+                replica[i + 1] = tsp;
+                replica[i].setTemperature(ladder[i]);
+                replica[i + 1].setTemperature(ladder[i + 1]);
+                ++numSwaps[i];
+            }
+        }
+    }
+}
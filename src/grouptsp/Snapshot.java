@@ -0,0 +1,135 @@
+/*
+ * Snapshot.java - Unveränderlicher Zustand einer Rundreisenlösung
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse Snapshot
+ *
+ * Kopie der Touren, Parameterwerte, Schritte und Temperatur eines
+ * TSProblem zu einem Zeitpunkt. Die Oberfläche zeichnet nur aus
+ * Snapshots, damit sie den Löser-Thread nie blockiert.
+ * Die Koordinaten der Städte werden geteilt, da sie sich nach der
+ * Initialisierung nicht mehr ändern.
+ */
+public class Snapshot {
+
+    /*
+     * Private Felder
+     */
+
+    private final int    tours[][];
+    private final float  cityX[], cityY[];
+    private final int    width, height, numSteps;
+    private final float  temperature, coolingRate;
+    private final String names[];
+    private final float  values[], differences[];
+
+    /*
+     * Konstruktor
+     */
+
+    // Muss im Thread aufgerufen werden, der "tsp" verändert
+    public Snapshot(TSProblem tsp) {
+        TourStore store = tsp.getTours();
+        tours = new int[store.getNumTours()][];
+        for (int t = 0; t < tours.length; ++t) {
+            tours[t] = new int[store.size(t)];
+            store.toArray(t, tours[t]);
+        }
+
+        cityX = tsp.getCityX();
+        cityY = tsp.getCityY();
+        width = tsp.getWidth();
+        height = tsp.getHeight();
+        numSteps = tsp.getNumSteps();
+        temperature = tsp.getTemperature();
+        coolingRate = tsp.getCoolingRate();
+
+        names = new String[tsp.getNumParameters()];
+        values = new float[names.length];
+        differences = new float[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            TSProblem.Parameter param = tsp.getParameter(i);
+            names[i] = param.getName();
+            values[i] = param.getValue();
+            differences[i] = param.getDifference();
+        }
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public int getNumTours() {
+        return tours.length;
+    }
+
+    public int getTourSize(int t) {
+        return tours[t].length;
+    }
+
+    // i-te Stadt der Tour "t" in Tourreihenfolge
+    public int getCity(int t, int i) {
+        return tours[t][i];
+    }
+
+    public int getNumCities() {
+        return cityX.length;
+    }
+
+    public float getCityX(int c) {
+        return cityX[c];
+    }
+
+    public float getCityY(int c) {
+        return cityY[c];
+    }
+
+    // Koordinaten aller Städte (geteilt, nicht verändern)
+    public float[] getCityX() {
+        return cityX;
+    }
+
+    public float[] getCityY() {
+        return cityY;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumSteps() {
+        return numSteps;
+    }
+
+    public float getTemperature() {
+        return temperature;
+    }
+
+    public float getCoolingRate() {
+        return coolingRate;
+    }
+
+    public int getNumParameters() {
+        return names.length;
+    }
+
+    public String getParameterName(int param) {
+        return names[param];
+    }
+
+    public float getValue(int param) {
+        return values[param];
+    }
+
+    public float getDifference(int param) {
+        return differences[param];
+    }
+}
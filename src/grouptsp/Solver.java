@@ -0,0 +1,188 @@
+/*
+ * Solver.java - Löser-Thread, der Snapshots veröffentlicht
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/*
+ * Klasse Solver
+ *
+ * Optimiert ein TSProblem in einem eigenen Thread ohne Pause.
+ * Höchstens alle PUBLISH_INTERVAL Millisekunden wird ein Snapshot
+ * veröffentlicht und die Listener werden im Event-Dispatch-Thread
+ * benachrichtigt. Ist noch eine Benachrichtigung ausstehend, wird
+ * keine weitere eingereiht.
+ *
+ * Solange der Thread läuft, darf nur er das Problem verändern.
+ * Änderungen von außen werden mit invoke() übergeben und zwischen
+ * zwei Blöcken ausgeführt.
+ */
+public class Solver implements Runnable, ChangeListener {
+
+    /*
+     * Konstanten
+     */
+
+    private static final int  CHUNK_STEPS      = 1000;
+    private static final long PUBLISH_INTERVAL = 40;
+
+    /*
+     * Private Felder
+     */
+
+    private final TSProblem tsp;
+    private final List      listeners;
+    private final ConcurrentLinkedQueue tasks;
+    private final AtomicBoolean notifyPending;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean  running;
+    private volatile int      param;
+    private Thread thread;
+
+    /*
+     * Konstruktor
+     */
+
+    public Solver(TSProblem t) {
+        tsp = t;
+        listeners = new ArrayList();
+        tasks = new ConcurrentLinkedQueue();
+        notifyPending = new AtomicBoolean();
+        snapshot = new Snapshot(tsp);
+        tsp.addChangeListener(this);
+    }
+
+    /*
+     * Steuerung (aus dem Event-Dispatch-Thread)
+     */
+
+    public void start(int p) {
+        if (running)
+            return;
+        param = p;
+        running = true;
+        thread = new Thread(this, "Solver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (!running)
+            return;
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        runTasks();
+        publish();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setParameter(int p) {
+        param = p;
+    }
+
+    // Änderung am Problem ausführen (im Löser-Thread, falls er läuft)
+    public void invoke(Runnable task) {
+        if (running)
+            tasks.add(task);
+        else
+            task.run();
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public TSProblem getProblem() {
+        return tsp;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void addChangeListener(ChangeListener l) {
+        listeners.add(l);
+    }
+
+    public void removeChangeListener(ChangeListener l) {
+        listeners.remove(l);
+    }
+
+    /*
+     * Implementation von Runnable
+     */
+
+    public void run() {
+        long lastPublish = 0;
+        while (running) {
+            runTasks();
+            tsp.optimize(param, CHUNK_STEPS);
+            long now = System.currentTimeMillis();
+            if (now - lastPublish >= PUBLISH_INTERVAL) {
+                publish();
+                lastPublish = now;
+            }
+        }
+    }
+
+    /*
+     * Implementation von ChangeListener
+     */
+
+    public void stateChanged(ChangeEvent e) {
+        // Änderungen außerhalb des Löser-Threads sofort veröffentlichen,
+        // im Löser-Thread nur im Takt von PUBLISH_INTERVAL
+        if (Thread.currentThread() != thread)
+            publish();
+    }
+
+    /*
+     * Private Methoden
+     */
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = (Runnable)tasks.poll()) != null)
+            task.run();
+    }
+
+    // Snapshot erstellen und Listener benachrichtigen
+    private void publish() {
+        snapshot = new Snapshot(tsp);
+        if (notifyPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    notifyPending.set(false);
+                    fireStateChanged();
+                }
+            });
+        }
+    }
+
+    // ChangeEvent "feuern"
+    private void fireStateChanged() {
+        ChangeEvent event = new ChangeEvent(this);
+        for (Iterator i = listeners.iterator(); i.hasNext(); )
+            ((ChangeListener)i.next()).stateChanged(event);
+    }
+}
@@ -9,9 +9,13 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.Point;
-import java.util.Iterator;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
 
 import javax.swing.BorderFactory;
 import javax.swing.JComponent;
@@ -19,6 +23,25 @@ import javax.swing.border.EtchedBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+/*
+ * Klasse TSPMap
+ *
+ * Zeichnet die Touren des letzten Snapshots. Mit dem Mausrad wird um
+ * den Mauszeiger vergrößert, durch Ziehen verschoben und mit einem
+ * Doppelklick wieder die ganze Karte gezeigt.
+ *
+ * Die Städte liegen in einem festen Gitter (etwa CELL_CITIES Städte
+ * je Zelle). Gezeichnet werden nur die Städte der sichtbaren Zellen
+ * und ihre Kanten. Kanten, die länger als eine Zelle sind, könnten
+ * den sichtbaren Bereich kreuzen, ohne dass ein Endpunkt in der Nähe
+ * liegt, sie werden je Snapshot in einer eigenen Liste gesammelt und
+ * einzeln geprüft. Der Aufwand hängt so von dem ab, was zu sehen ist.
+ *
+ * Die Markierungen der Städte werden in ein Bild gemalt, das nur bei
+ * neuer Größe oder neuem Ausschnitt neu erstellt wird. Jede Tour ist
+ * ein einziger Path2D. Kommen auf eine Stadt weniger als DETAIL_AREA
+ * Pixel, wird ohne Markierungen und ohne Kantenglättung gezeichnet.
+ */
 public class TSPMap extends JComponent implements ChangeListener {
 
     /*
@@ -28,8 +51,15 @@ public class TSPMap extends JComponent implements ChangeListener {
     private static final int
         POINT_RADIUS = 3,
         MAP_WIDTH    = 500,
-        MAP_HEIGHT   = 500;
+        MAP_HEIGHT   = 500,
+        DETAIL_AREA  = 100,
+        CELL_CITIES  = 2;
+
+    private static final float
+        ZOOM_STEP = 1.25f,
+        MAX_ZOOM  = 10000;
 
+    // Farben der ersten Touren, weitere werden erzeugt
     private static final Color TOUR_COLOR[] = {
         Color.RED,
         Color.GREEN,
@@ -38,23 +68,125 @@ public class TSPMap extends JComponent implements ChangeListener {
         Color.BLACK,
     };
 
+    private static final Color CITY_COLOR = Color.DARK_GRAY;
+
     /*
      * Sonstige private Felder
      */
 
-    private TSProblem tsp;
+    private Solver solver;
     private int borderWidth;
 
+    // Ausschnitt: Vergrößerung und Kartenpunkt in der linken oberen Ecke
+    private float zoom = 1, viewX, viewY;
+    private int   dragX, dragY;
+
+    // Gitter über die Städte (für "gridCityX")
+    private float gridCityX[];
+    private int   gridWidth, gridHeight;
+    private float cellWidth, cellHeight;
+    private int   cellStart[], cellCity[], cellOf[];
+
+    // Kanten des Snapshots "edgeSnapshot"
+    private Snapshot edgeSnapshot;
+    private int      succ[], pred[], tourOf[];
+    private boolean  longEdge[];        // Kante c -> succ[c] ist lang
+    private int      longEdges[], numLongEdges;
+
+    // Bild mit den Markierungen der Städte (Schlüssel: Karte und Ausschnitt)
+    private BufferedImage cityImage;
+    private float         imageCityX[], imageZoom, imageViewX, imageViewY;
+
+    // Zuletzt gezeichneter Snapshot
+    private Snapshot painted;
+
     /*
      * Konstruktor
      */
 
-    public TSPMap(TSProblem h) {
-        tsp = h;
-        tsp.addChangeListener(this);
+    public TSPMap(Solver s) {
+        solver = s;
+        solver.addChangeListener(this);
         setBorder(BorderFactory.createEtchedBorder(EtchedBorder.LOWERED));
         borderWidth = getInsets().top + POINT_RADIUS;
         setPreferredSize(new Dimension(MAP_WIDTH, MAP_HEIGHT));
+
+        MouseAdapter mouse = new MouseAdapter() {
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                Snapshot tsp = solver.getSnapshot();
+                setView(zoom,
+                        viewX - (e.getX() - dragX) / (getXScale(tsp) * zoom),
+                        viewY - (e.getY() - dragY) / (getYScale(tsp) * zoom));
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2)
+                    resetView();
+            }
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoomAt(e.getX(), e.getY(),
+                       (float)Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /*
+     * Farbe der Tour "t" für beliebig viele Touren. Nach den festen
+     * Farben wird der Farbton jeweils um den goldenen Schnitt gedreht,
+     * so liegen auch viele Farben weit auseinander.
+     */
+
+    public static Color getTourColor(int t) {
+        if (t < TOUR_COLOR.length)
+            return TOUR_COLOR[t];
+        float hue = (t - TOUR_COLOR.length) * 0.618034f;
+        return Color.getHSBColor(hue - (float)Math.floor(hue), 0.9f, 0.8f);
+    }
+
+    /*
+     * Ausschnitt
+     */
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    // Ganze Karte zeigen
+    public void resetView() {
+        setView(1, 0, 0);
+    }
+
+    // Um den Faktor "factor" vergrößern, der Punkt (x, y) bleibt stehen
+    public void zoomAt(int x, int y, float factor) {
+        Snapshot tsp = solver.getSnapshot();
+        float newZoom = Math.max(1, Math.min(MAX_ZOOM, zoom * factor));
+        float xScale = getXScale(tsp), yScale = getYScale(tsp);
+        float mapX = viewX + (x - borderWidth) / (xScale * zoom),
+              mapY = viewY + (y - borderWidth) / (yScale * zoom);
+        setView(newZoom,
+                mapX - (x - borderWidth) / (xScale * newZoom),
+                mapY - (y - borderWidth) / (yScale * newZoom));
+    }
+
+    // Ausschnitt setzen, er bleibt innerhalb der Karte
+    public void setView(float z, float x, float y) {
+        Snapshot tsp = solver.getSnapshot();
+        zoom = Math.max(1, Math.min(MAX_ZOOM, z));
+        float w = tsp.getWidth() - 1, h = tsp.getHeight() - 1;
+        viewX = Math.max(0, Math.min(w - w / zoom, x));
+        viewY = Math.max(0, Math.min(h - h / zoom, y));
+        repaint();
     }
 
     /*
@@ -67,52 +199,72 @@ public class TSPMap extends JComponent implements ChangeListener {
 
         Graphics2D graph = (Graphics2D)g;
 
-        graph.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                               RenderingHints.VALUE_ANTIALIAS_ON);
-
         graph.setBackground(Color.WHITE);
         graph.clearRect(0, 0, getWidth(), getHeight());
 
-        float xScale = (float)(getWidth() - 2 * borderWidth) / (tsp.getWidth() - 1),
-              yScale = (float)(getHeight() - 2 * borderWidth) / (tsp.getHeight() - 1);
-
-        for (int n = 0; n < tsp.getNumTours(); ++n) {
-            graph.setColor(TOUR_COLOR[n]);
-
-            /*
-             * Beim Zugriff auf die Stdte der Touren wird
-             * kein get() verwendet, da die Stdte in einer LinkedList
-             * gespeichert werden.
-             */
-
-            Iterator i = tsp.getTour(n).iterator();
-            if (!i.hasNext())
-                continue;
-
-            Point city = (Point)i.next();
-            int firstX = (int)(city.x * xScale + borderWidth);
-            int firstY = (int)(city.y * yScale + borderWidth);
-            int x = firstX, y = firstY;
-
-            while (true) {
-                graph.fillOval(x - POINT_RADIUS, y - POINT_RADIUS,
-                               2 * POINT_RADIUS, 2 * POINT_RADIUS);
-
-                if (!i.hasNext())
-                    break;
-                
-                city = (Point)i.next();
-                int newX = (int)(city.x * xScale + borderWidth);
-                int newY = (int)(city.y * yScale + borderWidth);
-                
-                graph.drawLine(x, y, newX, newY);
-
-                x = newX;
-                y = newY;
+        // Nur aus dem Snapshot zeichnen, nie aus dem Problem selbst
+        Snapshot tsp = solver.getSnapshot();
+        painted = tsp;
+        if (tsp.getNumCities() == 0)
+            return;
+        updateGrid(tsp);
+        updateEdges(tsp);
+
+        float xScale = getXScale(tsp) * zoom,
+              yScale = getYScale(tsp) * zoom;
+
+        // Sichtbarer Kartenbereich und Zellen (eine Zelle Rand)
+        Rectangle clip = graph.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        float x0 = viewX + (clip.x - borderWidth - POINT_RADIUS) / xScale,
+              y0 = viewY + (clip.y - borderWidth - POINT_RADIUS) / yScale,
+              x1 = viewX + (clip.x + clip.width - borderWidth + POINT_RADIUS) / xScale,
+              y1 = viewY + (clip.y + clip.height - borderWidth + POINT_RADIUS) / yScale;
+        int cx0 = cellX(x0) - 1, cx1 = cellX(x1) + 1,
+            cy0 = cellY(y0) - 1, cy1 = cellY(y1) + 1;
+
+        // Detailstufe nach der Fläche je Stadt
+        boolean detail = ((double)getWidth() * getHeight() * zoom * zoom >=
+                          (double)DETAIL_AREA * tsp.getNumCities());
+
+        if (detail) {
+            graph.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                   RenderingHints.VALUE_ANTIALIAS_ON);
+            graph.drawImage(getCityImage(tsp, xScale, yScale), 0, 0, null);
+        }
+
+        // Kanten der Städte in den sichtbaren Zellen
+        Path2D.Float[] path = new Path2D.Float[tsp.getNumTours()];
+        for (int i = 0; i < path.length; ++i)
+            path[i] = new Path2D.Float();
+        for (int cy = Math.max(cy0, 0); cy <= Math.min(cy1, gridHeight - 1); ++cy) {
+            for (int cx = Math.max(cx0, 0); cx <= Math.min(cx1, gridWidth - 1); ++cx) {
+                int cell = cy * gridWidth + cx;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; ++k) {
+                    int c = cellCity[k], p = pred[c];
+                    if (!longEdge[c])
+                        addEdge(path[tourOf[c]], tsp, c, succ[c], xScale, yScale);
+                    // Kante vom Vorgänger, wenn er nicht selbst sichtbar ist
+                    if (!longEdge[p] && !inCells(p, cx0, cy0, cx1, cy1))
+                        addEdge(path[tourOf[c]], tsp, p, c, xScale, yScale);
+                }
             }
+        }
+
+        // Lange Kanten einzeln prüfen
+        for (int i = 0; i < numLongEdges; ++i) {
+            int c = longEdges[i], s = succ[c];
+            float ax = tsp.getCityX(c), ay = tsp.getCityY(c),
+                  bx = tsp.getCityX(s), by = tsp.getCityY(s);
+            if (Math.max(ax, bx) >= x0 && Math.min(ax, bx) <= x1 &&
+                Math.max(ay, by) >= y0 && Math.min(ay, by) <= y1)
+                addEdge(path[tourOf[c]], tsp, c, s, xScale, yScale);
+        }
 
-            if (x != firstX || y != firstY)
-                graph.drawLine(firstX, firstY, x, y);
+        for (int n = 0; n < path.length; ++n) {
+            graph.setColor(getTourColor(n));
+            graph.draw(path[n]);
         }
     }
 
@@ -124,8 +276,147 @@ public class TSPMap extends JComponent implements ChangeListener {
         if (Util.isDebugEnabled())
             System.out.println(e);
 
-        // Karte neu zeichnen
-        repaint();
+        // Karte nur für einen neuen Snapshot neu zeichnen
+        if (solver.getSnapshot() != painted)
+            repaint();
     }
-}
 
+    /*
+     * Private Methoden
+     */
+
+    // Maßstab bei ganzer Karte
+    private float getXScale(Snapshot tsp) {
+        return (float)(getWidth() - 2 * borderWidth) / (tsp.getWidth() - 1);
+    }
+
+    private float getYScale(Snapshot tsp) {
+        return (float)(getHeight() - 2 * borderWidth) / (tsp.getHeight() - 1);
+    }
+
+    private void addEdge(Path2D.Float path, Snapshot tsp, int a, int b,
+                         float xScale, float yScale) {
+        if (a == b)
+            return;
+        path.moveTo((tsp.getCityX(a) - viewX) * xScale + borderWidth,
+                    (tsp.getCityY(a) - viewY) * yScale + borderWidth);
+        path.lineTo((tsp.getCityX(b) - viewX) * xScale + borderWidth,
+                    (tsp.getCityY(b) - viewY) * yScale + borderWidth);
+    }
+
+    private int cellX(float x) {
+        return (int)Math.floor(x / cellWidth);
+    }
+
+    private int cellY(float y) {
+        return (int)Math.floor(y / cellHeight);
+    }
+
+    // Liegt die Stadt "c" in den Zellen cx0..cx1, cy0..cy1?
+    private boolean inCells(int c, int cx0, int cy0, int cx1, int cy1) {
+        int cx = cellOf[c] % gridWidth, cy = cellOf[c] / gridWidth;
+        return (cx >= cx0 && cx <= cx1 && cy >= cy0 && cy <= cy1);
+    }
+
+    // Gitter für neue Städte aufbauen (Zählsortierung nach Zellen)
+    private void updateGrid(Snapshot tsp) {
+        if (gridCityX == tsp.getCityX())
+            return;
+        gridCityX = tsp.getCityX();
+
+        int n = tsp.getNumCities();
+        float w = Math.max(tsp.getWidth(), 1), h = Math.max(tsp.getHeight(), 1);
+        double cells = Math.max(1.0, (double)n / CELL_CITIES);
+        gridWidth = (int)Math.max(1, Math.min(4096, Math.ceil(Math.sqrt(cells * w / h))));
+        gridHeight = (int)Math.max(1, Math.min(4096, Math.ceil(cells / gridWidth)));
+        cellWidth = w / gridWidth;
+        cellHeight = h / gridHeight;
+
+        cellStart = new int[gridWidth * gridHeight + 1];
+        cellCity = new int[n];
+        cellOf = new int[n];
+        for (int c = 0; c < n; ++c) {
+            int cx = Math.min(gridWidth - 1, Math.max(0, cellX(tsp.getCityX(c)))),
+                cy = Math.min(gridHeight - 1, Math.max(0, cellY(tsp.getCityY(c))));
+            cellOf[c] = cy * gridWidth + cx;
+            ++cellStart[cellOf[c] + 1];
+        }
+        for (int i = 0; i < gridWidth * gridHeight; ++i)
+            cellStart[i + 1] += cellStart[i];
+        int[] fill = cellStart.clone();
+        for (int c = 0; c < n; ++c)
+            cellCity[fill[cellOf[c]]++] = c;
+    }
+
+    // Nachfolger, Vorgänger und lange Kanten eines neuen Snapshots
+    private void updateEdges(Snapshot tsp) {
+        if (edgeSnapshot == tsp)
+            return;
+        edgeSnapshot = tsp;
+
+        int n = tsp.getNumCities();
+        if (succ == null || succ.length != n) {
+            succ = new int[n];
+            pred = new int[n];
+            tourOf = new int[n];
+            longEdge = new boolean[n];
+            longEdges = new int[n];
+        }
+        numLongEdges = 0;
+        for (int t = 0; t < tsp.getNumTours(); ++t) {
+            int size = tsp.getTourSize(t);
+            for (int i = 0; i < size; ++i) {
+                int c = tsp.getCity(t, i),
+                    s = tsp.getCity(t, (i + 1 < size ? i + 1 : 0));
+                succ[c] = s;
+                pred[s] = c;
+                tourOf[c] = t;
+                longEdge[c] = (Math.abs(tsp.getCityX(c) - tsp.getCityX(s)) > cellWidth ||
+                               Math.abs(tsp.getCityY(c) - tsp.getCityY(s)) > cellHeight);
+                if (longEdge[c])
+                    longEdges[numLongEdges++] = c;
+            }
+        }
+    }
+
+    // Markierungen der sichtbaren Städte, nur bei neuer Größe, Karte
+    // oder neuem Ausschnitt neu malen
+    private BufferedImage getCityImage(Snapshot tsp, float xScale, float yScale) {
+        if (cityImage == null || cityImage.getWidth() != getWidth() ||
+            cityImage.getHeight() != getHeight() ||
+            imageCityX != tsp.getCityX() || imageZoom != zoom ||
+            imageViewX != viewX || imageViewY != viewY) {
+            cityImage = new BufferedImage(getWidth(), getHeight(),
+                                          BufferedImage.TYPE_INT_ARGB);
+            imageCityX = tsp.getCityX();
+            imageZoom = zoom;
+            imageViewX = viewX;
+            imageViewY = viewY;
+
+            Graphics2D image = cityImage.createGraphics();
+            image.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                   RenderingHints.VALUE_ANTIALIAS_ON);
+            image.setColor(CITY_COLOR);
+            int cx0 = Math.max(0, cellX(viewX - borderWidth / xScale)),
+                cy0 = Math.max(0, cellY(viewY - borderWidth / yScale)),
+                cx1 = Math.min(gridWidth - 1,
+                               cellX(viewX + (getWidth() - borderWidth) / xScale)),
+                cy1 = Math.min(gridHeight - 1,
+                               cellY(viewY + (getHeight() - borderWidth) / yScale));
+            for (int cy = cy0; cy <= cy1; ++cy) {
+                for (int cx = cx0; cx <= cx1; ++cx) {
+                    int cell = cy * gridWidth + cx;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; ++k) {
+                        int c = cellCity[k];
+                        int x = (int)((tsp.getCityX(c) - viewX) * xScale + borderWidth);
+                        int y = (int)((tsp.getCityY(c) - viewY) * yScale + borderWidth);
+                        image.fillOval(x - POINT_RADIUS, y - POINT_RADIUS,
+                                       2 * POINT_RADIUS, 2 * POINT_RADIUS);
+                    }
+                }
+            }
+            image.dispose();
+        }
+        return cityImage;
+    }
+}
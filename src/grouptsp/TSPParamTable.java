@@ -1,6 +1,6 @@
 /*
  * TSPParamTable.java - Swing-Tabelle, die die Parameter
- *                      der Rundreisenlsung anzeigt.
+ *                      der Rundreisenlösung anzeigt.
  * Geschrieben von Daniel Mendler
  */
 
@@ -36,8 +36,8 @@ public class TSPParamTable extends JPanel {
      * Konstruktor
      */
 
-    public TSPParamTable(TSProblem hrg, Color[] color) {
-        table = new JTable(new Model(hrg));
+    public TSPParamTable(Solver solver, Color[] color) {
+        table = new JTable(new Model(solver));
 
         TableColumnModel columnModel = table.getColumnModel();
 
@@ -55,9 +55,9 @@ public class TSPParamTable extends JPanel {
         table.setRowSelectionInterval(0, 0);
 
         // ToolTips
-        table.setToolTipText("Whlen Sie einen Parameter zum Optimieren aus.");
+        table.setToolTipText("Wählen Sie einen Parameter zum Optimieren aus.");
         table.getTableHeader().setToolTipText(
-            "Whlen Sie einen Parameter zum Optimieren aus.");
+            "Wählen Sie einen Parameter zum Optimieren aus.");
 
         setBorder(BorderFactory.createLoweredBevelBorder());
 
@@ -69,7 +69,7 @@ public class TSPParamTable extends JPanel {
     }
 
     /*
-     * Verschiedene ffentliche Methoden
+     * Verschiedene Öffentliche Methoden
      */
 
     public int getSelectedParameter() {
@@ -90,7 +90,7 @@ public class TSPParamTable extends JPanel {
         * Private Felder
         */
 
-        private TSProblem tsp;
+        private Solver solver;
 
         private final String[] columnName = {
             "Parameter",
@@ -102,13 +102,13 @@ public class TSPParamTable extends JPanel {
          * Konstruktor
          */
 
-        public Model(TSProblem h) {
-            tsp = h;
-            tsp.addChangeListener(this);
+        public Model(Solver s) {
+            solver = s;
+            solver.addChangeListener(this);
         }
 
         /*
-         * berschriebene Methoden von AbstractTableModel
+         * Überschriebene Methoden von AbstractTableModel
          */
 
         public int getColumnCount() {
@@ -116,7 +116,7 @@ public class TSPParamTable extends JPanel {
         }
 
         public int getRowCount() {
-            return tsp.getNumParameters();
+            return solver.getSnapshot().getNumParameters();
         }
 
         public String getColumnName(int col) {
@@ -124,11 +124,11 @@ public class TSPParamTable extends JPanel {
         }
 
         public Object getValueAt(int row, int col) {
-            TSProblem.Parameter param = tsp.getParameter(row);
+            Snapshot tsp = solver.getSnapshot();
             switch (col) {
-            case 0: return param.getName();
-            case 1: return new Float(param.getValue());
-            case 2: return new Float(param.getDifference());
+            case 0: return tsp.getParameterName(row);
+            case 1: return new Float(tsp.getValue(row));
+            case 2: return new Float(tsp.getDifference(row));
             }
             return null;
         }
@@ -145,7 +145,7 @@ public class TSPParamTable extends JPanel {
     } // private class Model
 
     /*
-     * Renderer fr farbige Tabellenzellen
+     * Renderer für farbige Tabellenzellen
      */
 
     private class ColorRenderer extends JLabel implements TableCellRenderer {
@@ -189,7 +189,7 @@ public class TSPParamTable extends JPanel {
     } // private class ColorRenderer
 
     /*
-     * Renderer fr formatierte Tabellenzellen
+     * Renderer für formatierte Tabellenzellen
      */
 
     private class FormatRenderer extends JLabel implements TableCellRenderer {
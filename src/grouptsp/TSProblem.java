@@ -1,5 +1,5 @@
 /* 
- * TSProblem.java - Klasse zum Berechnen der Rundreisenlsungen
+ * TSProblem.java - Klasse zum Berechnen der Rundreisenlösungen
  *                   und Parameter.
  * Geschrieben von Daniel Mendler
  */
@@ -7,14 +7,18 @@
 package grouptsp;
 
 import java.awt.Point;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -23,7 +27,7 @@ import javax.swing.event.ChangeListener;
  * Klasse HRGProblem (HandlungsReiseGruppe-Problem)
  *
  * Diese Klasse ist der Kern des Programms.
- * Sie ist fr alle Berechnungen zustndig.
+ * Sie ist für alle Berechnungen zuständig.
  */
 public class TSProblem {
 
@@ -33,115 +37,470 @@ public class TSProblem {
      */
 
     private int   numSteps,
+                  numAccepted,
+                  numCities,
                   width,
                   height;
-    private List  tour[], cities;
+    private float cityX[], cityY[];   // Koordinaten der Städte
+    private int   originalCity[];     // Nummer vor renumber() (null = gleich)
+    private TourStore tours;
+    private DistanceOracle oracle;
+    private int   neighbors[];  // Kandidatenlisten (null = noch nicht erstellt)
+    private boolean neighborMoves;
+    private int   construction = Construction.RANDOM;  // Startlösung
+    private double lengths[]; // Gecachte Längen der Touren
+    private boolean lengthDirty[], // Länge muss neu berechnet werden
+                    anyLengthDirty;
+    private TourIndex index;  // Ab INDEX_TOURS Touren, sonst null
     private float temperature,
                   coolingRate,
 		  minimalLengthTemp; // FIXME
+    private boolean minimalLengthValid;
 
     /*
-     * Die Parameter-Registry. Hier knnen
+     * Die Parameter-Registry. Hier können
      * Parameterklassen eingetragen werden.
      */
 
     private final Parameter[] parameter = {
         /*
-         * Parameter "Gesamtlnge"
+         * Parameter "Gesamtlänge"
          */
         new Parameter() {
             public String getName() {
-                return "Gesamtlnge";
+                return "Gesamtlänge";
             }
             public float calcValue() {
+                if (index != null)
+                    return (float)index.getSum();
                 float value = 0;
-                for (int i = 0; i < tour.length; ++i)
-                    value += tourLength(i);
+                for (int i = 0; i < tours.getNumTours(); ++i)
+                    value += lengths[i];
                 return value;
             }
 
             public float calcOptimum() {
-            	return minimalLengthTemp;
+            	return getMinimalLength();
             }
         },
 
         /*
-         * Parameter "Gesamtlnge + Verteilung"
+         * Parameter "Gesamtlänge + Verteilung"
          */
         new Parameter() {
             private static final float LENGTH_FACTOR = 1,
                                        DISTRIB_FACTOR = 1;
 
             public String getName() {
-                return "Gesamtlnge + Verteilung";
+                return "Gesamtlänge + Verteilung";
             }
             public float calcValue() {
+                if (tours.getNumTours() >= DEVIATION_TOURS)
+                    return (float)(LENGTH_FACTOR * index.getSum() +
+                                   DISTRIB_FACTOR * index.getDeviation());
                 float totalLength = 0,
-                      distribution = 0,
-                      length[] = new float[tour.length];
-                for (int i = 0; i < tour.length; ++i) {
-                    length[i] = tourLength(i);
-                    totalLength += length[i];
-                }
-                float average = totalLength / tour.length;
-                for (int i = 0; i < tour.length; ++i)
-                    distribution += Math.abs(average - length[i]);
+                      distribution = 0;
+                for (int i = 0; i < tours.getNumTours(); ++i)
+                    totalLength += (float)lengths[i];
+                float average = totalLength / tours.getNumTours();
+                for (int i = 0; i < tours.getNumTours(); ++i)
+                    distribution += Math.abs(average - (float)lengths[i]);
                 return (LENGTH_FACTOR * totalLength +
                         DISTRIB_FACTOR * distribution);
             }
             public float calcOptimum() {
-                return (LENGTH_FACTOR * minimalLengthTemp);
+                return (LENGTH_FACTOR * getMinimalLength());
             }
         },
 
         /*
-         * Parameter "Lngste Reise"
+         * Parameter "Längste Reise"
          */
         new Parameter() {
             public String getName() {
-                return "Lngste Reise";
+                return "Längste Reise";
             }
             public float calcValue() {
+                if (index != null)
+                    return (float)index.getMax();
                 float value = 0;
-                for (int i = 0; i < tour.length; ++i) {
-                    float length = tourLength(i);
+                for (int i = 0; i < tours.getNumTours(); ++i) {
+                    float length = (float)lengths[i];
                     if (length > value)
                         value = length;
                 }
                 return value;
             }
             public float calcOptimum() {
-            	return (minimalLengthTemp / tour.length);
+            	return (getMinimalLength() / tours.getNumTours());
             }
         },
     };
 
+    /*
+     * Die Schritt-Registry. Jeder Schritt wählt zufällige Städte,
+     * trägt die neuen Tourlängen mit changeLength() vorläufig ein und
+     * verändert die Touren erst in apply(), wenn er angenommen wird.
+     * Gewählt wird nach den Gewichten, anfangs nur "Verschieben".
+     */
+
+    private final Move[] move = {
+        /*
+         * Schritt "Verschieben": eine Stadt an eine andere Stelle
+         * (auch in eine andere Tour)
+         */
+        new Move(1) {
+            private int tourA, tourB, cityA, cityB;
+
+            public String getName() {
+                return "Verschieben";
+            }
+            public boolean propose() {
+                // "cityB" wird vor "cityA" verschoben
+                // (-1, wenn die Tour A leer ist)
+                if (numCandidates > 0) {
+                    // Stadt neben einen nahen Nachbarn verschieben
+                    cityB = random.nextInt(numCities);
+                    cityA = candidates[cityB * numCandidates +
+                                       random.nextInt(numCandidates)];
+                    if (random.nextBoolean()) {
+                        // Nach dem Nachbarn einfügen
+                        cityA = tours.next(cityA);
+                        if (cityA == cityB)
+                            cityA = tours.next(cityB);
+                    }
+                    tourA = tours.tourOf(cityA);
+                    tourB = tours.tourOf(cityB);
+                    // Die letzte Stadt bleibt: Eine leere Tour hat keine
+                    // Nachbarn und würde nie wieder gefüllt
+                    if (tourA != tourB && tours.size(tourB) == 1)
+                        return false;
+                } else {
+                    // Zufällige Touren auswählen
+                    int numTours = tours.getNumTours();
+                    tourA = random.nextInt(numTours);
+                    do
+                        tourB = random.nextInt(numTours);
+                    while (tours.size(tourB) < 1 + (tourA == tourB ? 1 : 0));
+
+                    // Zufällige Städte auswählen
+                    cityB = tours.member(tourB, random.nextInt(tours.size(tourB)));
+                    cityA = -1;
+                    if (tours.size(tourA) > 0) {
+                        do
+                            cityA = tours.member(tourA, random.nextInt(tours.size(tourA)));
+                        while (cityA == cityB);
+                    }
+                }
+
+                // Beide Änderungen vor dem Eintragen berechnen
+                double deltaB = removalDelta(cityB),
+                       deltaA = insertionDelta(cityB, cityA);
+                changeLength(tourB, deltaB);
+                changeLength(tourA, deltaA);
+                return true;
+            }
+            public void apply() {
+                tours.remove(cityB);
+                if (cityA < 0)
+                    tours.add(tourA, cityB);
+                else
+                    tours.insertBefore(cityB, cityA);
+            }
+        },
+
+        /*
+         * Schritt "2-opt": die Kanten (a, a') und (b, b') einer Tour
+         * durch (a, b) und (a', b') ersetzen, der Weg a' bis b wird
+         * dabei umgedreht. Entfernt Kreuzungen innerhalb einer Tour.
+         */
+        new Move(0) {
+            private int cityA, cityB;
+
+            public String getName() {
+                return "2-opt";
+            }
+            public boolean propose() {
+                if (numCandidates > 0) {
+                    // Neue Kante zu einem nahen Nachbarn
+                    cityA = random.nextInt(numCities);
+                    cityB = candidates[cityA * numCandidates +
+                                       random.nextInt(numCandidates)];
+                    if (tours.tourOf(cityA) != tours.tourOf(cityB))
+                        return false;
+                } else {
+                    int t = random.nextInt(tours.getNumTours());
+                    if (tours.size(t) < 4)
+                        return false;
+                    cityA = tours.member(t, random.nextInt(tours.size(t)));
+                    cityB = tours.member(t, random.nextInt(tours.size(t)));
+                }
+
+                int nextA = tours.next(cityA), nextB = tours.next(cityB);
+                if (cityA == cityB || nextA == cityB || nextB == cityA)
+                    return false;
+                changeLength(tours.tourOf(cityA),
+                             distance(cityA, cityB) + distance(nextA, nextB) -
+                             distance(cityA, nextA) - distance(cityB, nextB));
+                return true;
+            }
+            public void apply() {
+                tours.twoOpt(cityA, cityB);
+            }
+        },
+
+        /*
+         * Schritt "Or-opt": einen Weg aus bis zu MAX_SEGMENT Städten
+         * innerhalb seiner Tour nach einer anderen Stadt einfügen,
+         * wahlweise umgedreht.
+         */
+        new Move(0) {
+            private int first, last, city;
+            private boolean reversed;
+
+            public String getName() {
+                return "Or-opt";
+            }
+            public boolean propose() {
+                reversed = random.nextBoolean();
+                if (numCandidates > 0) {
+                    // Weg neben einen nahen Nachbarn legen
+                    first = random.nextInt(numCities);
+                    city = candidates[first * numCandidates +
+                                      random.nextInt(numCandidates)];
+                    if (reversed)
+                        city = tours.prev(city);
+                } else {
+                    int t = random.nextInt(tours.getNumTours());
+                    if (tours.size(t) < 3)
+                        return false;
+                    first = tours.member(t, random.nextInt(tours.size(t)));
+                    city = tours.member(t, random.nextInt(tours.size(t)));
+                }
+                if (first == city || tours.tourOf(first) != tours.tourOf(city))
+                    return false;
+
+                // Weg bilden, "city" darf nicht darin liegen
+                last = first;
+                for (int i = random.nextInt(MAX_SEGMENT); i > 0; --i) {
+                    last = tours.next(last);
+                    if (last == city)
+                        return false;
+                }
+                int before = tours.prev(first), after = tours.next(last);
+                if (city == before)
+                    return false;
+
+                int next = tours.next(city);
+                double delta = distance(before, after) -
+                               distance(before, first) - distance(last, after) -
+                               distance(city, next);
+                if (reversed)
+                    delta += distance(city, last) + distance(first, next);
+                else
+                    delta += distance(city, first) + distance(last, next);
+                changeLength(tours.tourOf(city), delta);
+                return true;
+            }
+            public void apply() {
+                tours.moveSegment(first, last, city, reversed);
+            }
+        },
+
+        /*
+         * Schritte zwischen zwei Touren: Wege tauschen ihre Touren
+         */
+        new Exchange("Tauschen", 1),
+        new Exchange("Cross-Exchange", MAX_SEGMENT),
+        new Exchange("2-opt*", MAX_TAIL),
+    };
+
+    /*
+     * Aspekte einer Änderung. Listener melden sich mit einer Maske für
+     * die Aspekte an, die sie interessieren.
+     */
+
+    public static final int TOURS    = 1,  // Touren, Längen, Schrittzähler
+                            SCHEDULE = 2,  // Temperatur und Abkühlrate
+                            INSTANCE = 4,  // Städte, Anzahl Touren, Fläche
+                            ALL      = TOURS | SCHEDULE | INSTANCE;
+
     /*
      * Sonstige private Felder
      */
 
-    private List listeners;
-    private static Random random = new Random();
+    private List listeners;               // Subscription-Objekte
+    private final ChangeEvent event = new ChangeEvent(this);
+    private int     pendingAspects,       // Noch nicht gemeldete Aspekte
+                    firedAspects;         // Gerade gemeldete Aspekte
+    private boolean firing;
+
+    // Kandidatenlisten während optimize() (null = zufällige Schritte)
+    private int candidates[], numCandidates;
+
+    // Vorläufig geänderte Tourlängen für die Rücknahme
+    private final int    undoTour[] = new int[2];
+    private final double undoLength[] = new double[2];
+    private int          numUndo;
+
+    /*
+     * Jedes Problem hat einen eigenen Zufallsstrom. Mit dem gleichen
+     * Startwert und den gleichen Aufrufen wird ein Lauf bitgenau
+     * wiederholt.
+     */
+
+    private SplittableRandom random;
+    private long seed;
+
+    /*
+     * Im Debug-Modus werden die gecachten Tourlängen alle
+     * CHECK_INTERVAL Schritte mit einer vollständigen
+     * Neuberechnung verglichen.
+     */
+
+    private static final int    CHECK_INTERVAL = 10000;
+    private static final double CHECK_EPSILON  = 1e-3;
+
+    // Wie Util.isDebugEnabled(), aber ohne die AWT-Klassen von Util
+    // zu laden (wichtig für Batch)
+    private static final boolean DEBUG = (System.getProperty("debug") != null);
+
+    // Größe der Kandidatenlisten für Nachbarschaftsschritte
+    private static final int NUM_NEIGHBORS = 8;
+
+    // Stichprobe aus dem 2-d-Baum je Kandidat bei nicht euklidischen
+    // Abständen
+    private static final int NEIGHBOR_SAMPLES = 4;
+
+    // Ab so vielen Touren werden Summe und Maximum mit einem TourIndex
+    // in O(log k) gehalten, ab DEVIATION_TOURS auch die Abweichungen
+    // (Treap). Darunter ist das Durchlaufen der Längen schneller.
+    private static final int INDEX_TOURS     = 128,
+                             DEVIATION_TOURS = 1024;
+
+    // Längste Wege beim Or-opt und Cross-Exchange
+    private static final int MAX_SEGMENT = 3;
+
+    // Längste Wege beim 2-opt*
+    private static final int MAX_TAIL = 16;
 
     /*
      * Konstruktor und Initalisierungsmethode
      */
 
     public TSProblem(int numTours, int numCities, int w, int h) {
+        this(numTours, numCities, w, h, newSeed());
+    }
+
+    public TSProblem(int numTours, int numCities, int w, int h, long seed) {
         listeners = new ArrayList();
-        // Parameter registrieren
-        for (int i = 0; i < parameter.length; ++i)
-            addChangeListener(parameter[i]);
+        setSeed(seed);
         init(numTours, numCities, w, h);
     }
 
+    // Problem mit vorgegebenen Städten
+    public TSProblem(int numTours, float[] x, float[] y) {
+        this(numTours, x, y, newSeed());
+    }
+
+    public TSProblem(int numTours, float[] x, float[] y, long seed) {
+        listeners = new ArrayList();
+        setSeed(seed);
+        init(numTours, x, y);
+    }
+
+    // Problem mit vorgegebenen Abständen (z.B. einer MappedMatrix)
+    public TSProblem(int numTours, DistanceOracle oracle) {
+        this(numTours, oracle, newSeed());
+    }
+
+    public TSProblem(int numTours, DistanceOracle oracle, long seed) {
+        listeners = new ArrayList();
+        setSeed(seed);
+        init(numTours, oracle);
+    }
+
+    /*
+     * Kopie eines Problems mit eigenen Touren. Städte, Kandidatenlisten
+     * und (falls thread-sicher) die Abstände werden geteilt, deswegen
+     * kann die Kopie in einem anderen Thread optimiert werden.
+     * Ohne Startwert wird einer aus dem Strom von "other" gezogen, das
+     * muss im Thread von "other" geschehen.
+     */
+    public TSProblem(TSProblem other) {
+        this(other, other.nextSeed());
+    }
+
+    public TSProblem(TSProblem other, long seed) {
+        listeners = new ArrayList();
+        setSeed(seed);
+
+        numCities = other.numCities;
+        width = other.width;
+        height = other.height;
+        cityX = other.cityX;
+        cityY = other.cityY;
+        originalCity = other.originalCity;
+        oracle = other.oracle.fork();
+        neighbors = other.neighbors;
+        neighborMoves = other.neighborMoves;
+        construction = other.construction;
+        tours = new TourStore(other.tours);
+        lengths = other.lengths.clone();
+        lengthDirty = other.lengthDirty.clone();
+        if (other.index != null)
+            index = new TourIndex(lengths);
+        anyLengthDirty = other.anyLengthDirty;
+        temperature = other.temperature;
+        coolingRate = other.coolingRate;
+        numSteps = other.numSteps;
+        numAccepted = other.numAccepted;
+        minimalLengthTemp = other.minimalLengthTemp;
+        minimalLengthValid = other.minimalLengthValid;
+        for (int m = 0; m < move.length; ++m)
+            move[m].weight = other.move[m].weight;
+    }
+
     public void init(int numTours, int numCities, int w, int h) {
+        // Gleichverteilte Städte aus dem eigenen Zufallsstrom
+        float[][] cities = new CityGenerator(w, h, random)
+            .generate(CityGenerator.UNIFORM, numCities);
+        init(numTours, cities[0], cities[1], w, h);
+    }
+
+    // Problem mit vorgegebenen Städten initialisieren
+    public void init(int numTours, float[] x, float[] y) {
+        init(numTours, x, y, null);
+    }
+
+    // Städte und Abstände aus "oracle" übernehmen
+    public void init(int numTours, DistanceOracle oracle) {
+        init(numTours, oracle.getX(), oracle.getY(), oracle);
+    }
+
+    private void init(int numTours, float[] x, float[] y, DistanceOracle o) {
+        float maxX = 0, maxY = 0;
+        for (int i = 0; i < x.length; ++i) {
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        init(numTours, x, y, (int)Math.ceil(maxX) + 1,
+                             (int)Math.ceil(maxY) + 1, o);
+    }
+
+    private void init(int numTours, float[] x, float[] y, int w, int h) {
+        init(numTours, x, y, w, h, null);
+    }
+
+    // Ohne "o" werden die Abstände aus den Koordinaten berechnet
+    private void init(int numTours, float[] x, float[] y, int w, int h,
+                      DistanceOracle o) {
         // Touren erstellen
-        tour = new List[numTours];
-        for (int i = 0; i < tour.length; ++i)
-            // LinkedList benutzen, da andauernd entfernt
-            // und hinzugefgt wird
-            tour[i] = new LinkedList();
+        numCities = x.length;
+        tours = new TourStore(numTours, numCities);
+        lengths = new double[numTours];
+        lengthDirty = new boolean[numTours];
+        index = (numTours >= INDEX_TOURS ? new TourIndex(lengths) : null);
 
         // Werte setzen
         width = w;
@@ -149,21 +508,19 @@ public class TSProblem {
         temperature = 10 * numCities;
         coolingRate = 0.999f;
         numSteps = 0;
+        numAccepted = 0;
+        neighbors = null;
 
-        // Stdte erstellen
-        Set citySet = new HashSet();
-        for (int i = 0; i < numCities; ++i) {
-            Point position;
-            do
-                position = new Point(random.nextInt(width),
-                                     random.nextInt(height));
-            while (citySet.contains(position));
-            citySet.add(position);
-        }
-        cities = new ArrayList(citySet);
+        cityX = x;
+        cityY = y;
+        originalCity = null;
+        oracle = (o != null ? o :
+                  DistanceOracle.create(cityX, cityY,
+                                        DistanceOracle.DEFAULT_BUDGET));
 
-        // Stdte auf die Touren verteilen
+        // Städte auf die Touren verteilen
         distributeCities();
+        invalidateLengths();
 
         /*
         // Parameter initialisieren
@@ -171,86 +528,395 @@ public class TSProblem {
             parameter[i].init();
             */
         
-        minimalLengthTemp = minimalLength();
+        // Untere Schranke erst berechnen, wenn ein Optimum gelesen wird
+        minimalLengthValid = false;
         
+        changed(ALL);
+        fireStateChanged();
+    }
+
+    /*
+     * Städte entlang einer Hilbert-Kurve neu nummerieren. Nahe Städte
+     * haben danach nahe Nummern, so liegen Abstandszeilen, Touren und
+     * Kandidatenlisten auch im Speicher nah beieinander. Die Touren
+     * bleiben erhalten, Abstände und Kandidatenlisten werden neu
+     * erstellt, deshalb sollte das direkt nach init() geschehen.
+     * getOriginalCity() liefert die alte Nummer für die Ausgabe.
+     */
+
+    public void renumber() {
+        int[] order = Construction.hilbertOrder(cityX, cityY);  // neu -> alt
+        int[] newCity = new int[numCities];
+        float[] x = new float[numCities], y = new float[numCities];
+        int[] original = new int[numCities];
+        for (int i = 0; i < numCities; ++i) {
+            newCity[order[i]] = i;
+            x[i] = cityX[order[i]];
+            y[i] = cityY[order[i]];
+            original[i] = (originalCity != null ? originalCity[order[i]] : order[i]);
+        }
+
+        // Touren in Tourreihenfolge mit den neuen Nummern aufbauen
+        TourStore renamed = new TourStore(tours.getNumTours(), numCities);
+        int[] tour = new int[numCities];
+        for (int t = 0; t < tours.getNumTours(); ++t) {
+            int size = tours.toArray(t, tour);
+            for (int i = 0; i < size; ++i)
+                renamed.add(t, newCity[tour[i]]);
+        }
+
+        tours = renamed;
+        cityX = x;
+        cityY = y;
+        originalCity = original;
+        oracle = oracle.renumber(order, cityX, cityY);
+        neighbors = null;
+
+        changed(ALL);
         fireStateChanged();
     }
 
+    // Nummer der Stadt "c" vor renumber() (Eingabereihenfolge)
+    public int getOriginalCity(int c) {
+        return (originalCity != null ? originalCity[c] : c);
+    }
+
+    // Neue Startlösung mit dem Verfahren "c" (siehe Construction)
+    public void randomize(int c) {
+        setConstruction(c);
+        randomize();
+    }
+
     public void randomize() {
-        // Stdte durchmischen
-        Collections.shuffle(cities, random);
-        for (int i = 0; i < tour.length; ++i)
-            tour[i].clear();
-        // Stdte auf die Touren verteilen
+        tours.clear();
+        // Städte auf die Touren verteilen
         distributeCities();
+        invalidateLengths();
         
+        changed(TOURS);
         fireStateChanged();
     }
 
     /*
      * Diese Optimierungsmethode optimiert einen bestimmten Parameter
-     * "param". Es werden "steps" Iterationsschritte durchgefhrt.
+     * "param". Es werden "steps" Iterationsschritte durchgeführt.
+     *
+     * Die Längenänderung eines Schritts wird nur aus den Nachbarn
+     * der verschobenen Stadt berechnet (Vorgänger/Nachfolger in der
+     * Quelltour, Einfügenachbarn in der Zieltour). Die gecachten
+     * Tourlängen werden nur bei Akzeptanz übernommen.
+     *
+     * Bei Nachbarschaftsschritten wird eine zufällige Stadt direkt vor
+     * oder nach einem ihrer NUM_NEIGHBORS nächsten Nachbarn eingefügt,
+     * statt an einer beliebigen Stelle.
      */
 
     public void optimize(int param, int steps) {
-        for (int i = 0; i < steps; ++i) {
-            int tourA, tourB, cityA, cityB;
+        // Mit weniger als zwei Städten gibt es keine Schritte
+        if (numCities < 2)
+            steps = 0;
+        updateLengths();
+        Parameter p = parameter[param];
+        p.getValue();
+        float oldTemperature = temperature;
 
-            // Zufllige Touren auswhlen
-            tourA = random.nextInt(tour.length);
-            do
-                tourB = random.nextInt(tour.length);
-            while (tour[tourB].size() < 1 + (tourA == tourB ? 1 : 0));
+        candidates = (neighborMoves ? getNeighbors() : null);
+        numCandidates = (candidates != null ?
+                         candidates.length / numCities : 0);
+
+        // Gesamtgewicht der Schritte, bei nur einem Schritt wird
+        // keine Zufallszahl für die Auswahl gezogen
+        float totalWeight = 0;
+        Move single = null;
+        for (int m = 0; m < move.length; ++m) {
+            if (move[m].weight > 0) {
+                single = (totalWeight == 0 ? move[m] : null);
+                totalWeight += move[m].weight;
+            }
+        }
+        if (totalWeight == 0)
+            steps = 0;
 
-            // Zufllige Stdte auswhlen
-            cityA = random.nextInt(Math.max(1, tour[tourA].size()));
-            do
-                cityB = random.nextInt(tour[tourB].size());
-            while (tourA == tourB && cityA == cityB);
+        for (int i = 0; i < steps; ++i) {
+            // Schritt auswählen
+            Move m = single;
+            if (m == null) {
+                float r = random.nextFloat() * totalWeight;
+                int k = 0;
+                while (k < move.length - 1 && (r -= move[k].weight) >= 0)
+                    ++k;
+                m = move[k];
+                // Rundungsfehler: letzten Schritt mit Gewicht nehmen
+                while (m.weight <= 0)
+                    m = move[--k];
+            }
 
-            // Neue Lsung erstellen
-            tour[tourA].add(cityA, tour[tourB].remove(cityB));
+            // Neue Tourlängen vorläufig eintragen
+            ++m.numAttempts;
+            numUndo = 0;
+            if (m.propose()) {
+                // Wird die neue Lösung akzeptiert?
+                float newValue = p.calcValue();
+                if (newValue - p.value < temperature) {
+                    p.value = newValue;
+                    temperature *= coolingRate;
+                    ++numAccepted;
+                    ++m.numAccepted;
 
-            // Wird die neue Lsung akzeptiert?
-            float newValue = parameter[param].calcValue();
-            if (newValue - parameter[param].value < temperature) {
-                parameter[param].value = newValue;
-                temperature *= coolingRate;
+                    // Neue Lösung erstellen
+                    m.apply();
+                }
+                else {
+                    while (numUndo > 0) {
+                        --numUndo;
+                        setLength(undoTour[numUndo], undoLength[numUndo]);
+                    }
+                }
             }
-            else
-                tour[tourB].add(cityB, tour[tourA].remove(cityA));
 
             ++numSteps;
+            if (DEBUG && numSteps % CHECK_INTERVAL == 0)
+                checkLengths();
+        }
+        candidates = null;
+
+        // Der Wert von "param" wurde mitgeführt und bleibt gültig
+        if (steps > 0) {
+            changed(TOURS | (temperature != oldTemperature ? SCHEDULE : 0));
+            p.valid = true;
+            fireStateChanged();
         }
-        fireStateChanged();
+    }
+
+    /*
+     * Nachoptimierung: Touren mit LocalSearch (2-opt und Or-opt)
+     * verbessern, bis kein Schritt sie mehr verkürzt. Liefert die
+     * Verkürzung.
+     */
+
+    public double improveTour(int t) {
+        LocalSearch search = new LocalSearch(tours, oracle, cityX, cityY,
+                                             new int[numCities]);
+        double gain = search.improve(t);
+        if (gain > 0) {
+            invalidateLength(t);
+            changed(TOURS);
+            fireStateChanged();
+        }
+        return gain;
+    }
+
+    // Alle Touren gleichzeitig verbessern, eine Aufgabe je Tour. Jeder
+    // Thread des Pools holt sich beim ersten Aufruf eine eigene Kopie
+    // der Abstände, nicht jede Aufgabe.
+    public double improveTours() {
+        final int[] position = new int[numCities];
+        final ThreadLocal distances = new ThreadLocal() {
+            protected Object initialValue() {
+                return oracle.fork();
+            }
+        };
+        List tasks = new ArrayList();
+        for (int t = 0; t < tours.getNumTours(); ++t) {
+            final int tour = t;
+            tasks.add(new Callable() {
+                public Object call() {
+                    LocalSearch search =
+                        new LocalSearch(tours, (DistanceOracle)distances.get(),
+                                        cityX, cityY, position);
+                    return Double.valueOf(search.improve(tour));
+                }
+            });
+        }
+
+        double gain = 0;
+        try {
+            // Ergebnisse in Tourreihenfolge
+            List results = ForkJoinPool.commonPool().invokeAll(tasks);
+            for (int t = 0; t < results.size(); ++t) {
+                double g = ((Double)((Future)results.get(t)).get()).doubleValue();
+                if (g > 0)
+                    invalidateLength(t);
+                gain += g;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            invalidateLengths();
+        } catch (ExecutionException ex) {
+            invalidateLengths();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            changed(TOURS);
+            fireStateChanged();
+        }
+        return gain;
     }
 
     /*
      * Zugriffsmethoden
      */
 
+    // Listener für alle Aspekte
     public void addChangeListener(ChangeListener l) {
-        listeners.add(l);
+        addChangeListener(l, ALL);
+    }
+
+    // Listener nur für die Aspekte in "aspects" (TOURS, SCHEDULE, ...)
+    public void addChangeListener(ChangeListener l, int aspects) {
+        listeners.add(new Subscription(l, aspects));
     }
 
     public void removeChangeListener(ChangeListener l) {
-        listeners.remove(l);
+        for (int i = 0; i < listeners.size(); ++i) {
+            if (((Subscription)listeners.get(i)).listener == l) {
+                listeners.remove(i);
+                return;
+            }
+        }
+    }
+
+    // Während stateChanged(): welche Aspekte sich geändert haben
+    public int getChangedAspects() {
+        return firedAspects;
+    }
+
+    // Startwert des Zufallsstroms
+    public long getSeed() {
+        return seed;
+    }
+
+    // Zufallsstrom neu beginnen
+    public void setSeed(long s) {
+        seed = s;
+        random = new SplittableRandom(s);
+    }
+
+    // Startwert für eine Kopie oder einen Arbeiter aus dem eigenen Strom
+    public long nextSeed() {
+        return random.nextLong();
     }
 
     public int getNumTours() {
-        return tour.length;
+        return tours.getNumTours();
     }
 
     public int getNumCities() {
-        return cities.size();
+        return numCities;
     }
 
     public int getNumSteps() {
         return numSteps;
     }
 
-    public List getTour(int t) {
-        return tour[t];
+    public int getNumAccepted() {
+        return numAccepted;
+    }
+
+    public boolean isNeighborMoves() {
+        return neighborMoves;
+    }
+
+    // Nur Schritte zu nahen Nachbarn vorschlagen
+    public void setNeighborMoves(boolean n) {
+        neighborMoves = n;
+    }
+
+    /*
+     * Kandidatenlisten, bei Bedarf über einen 2-d-Baum erstellt. Sind
+     * die Abstände nicht euklidisch (MappedMatrix), liefert der Baum
+     * NEIGHBOR_SAMPLES-mal so viele Kandidaten, von denen die nach den
+     * wirklichen Abständen nächsten bleiben.
+     */
+    public int[] getNeighbors() {
+        if (neighbors == null) {
+            if (oracle.isEuclidean())
+                neighbors = new KdTree(cityX, cityY).neighbors(NUM_NEIGHBORS);
+            else
+                neighbors = nearestByOracle();
+        }
+        return neighbors;
+    }
+
+    private int[] nearestByOracle() {
+        int k = Math.max(0, Math.min(NUM_NEIGHBORS, numCities - 1)),
+            s = Math.max(0, Math.min(NEIGHBOR_SAMPLES * NUM_NEIGHBORS, numCities - 1));
+        int[] sample = new KdTree(cityX, cityY).neighbors(s),
+              result = new int[numCities * k];
+        long[] keys = new long[s];
+        for (int c = 0; c < numCities; ++c) {
+            // Abstand (nicht negativ, die Bits sind also wie die Zahlen
+            // geordnet) oben, Position in der Stichprobe unten
+            for (int i = 0; i < s; ++i)
+                keys[i] = ((long)Float.floatToIntBits(
+                               oracle.distance(c, sample[c * s + i])) << 32) | i;
+            Arrays.sort(keys);
+            for (int i = 0; i < k; ++i)
+                result[c * k + i] = sample[c * s + (int)keys[i]];
+        }
+        return result;
+    }
+
+    // Nur lesbare Sicht auf die Tour (erzeugt Point-Objekte)
+    public List getTour(final int t) {
+        return new AbstractList() {
+            public int size() {
+                return tours.size(t);
+            }
+            public Object get(int index) {
+                int c = tours.head(t);
+                for (int i = 0; i < index; ++i)
+                    c = tours.next(c);
+                return getCity(c);
+            }
+            public Iterator iterator() {
+                return new Iterator() {
+                    private int c = tours.head(t), n = 0;
+                    public boolean hasNext() {
+                        return (n < tours.size(t));
+                    }
+                    public Object next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        Point city = getCity(c);
+                        c = tours.next(c);
+                        ++n;
+                        return city;
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    public Point getCity(int c) {
+        return new Point((int)cityX[c], (int)cityY[c]);
+    }
+
+    public float getCityX(int c) {
+        return cityX[c];
+    }
+
+    // Koordinaten aller Städte (nicht verändern)
+    public float[] getCityX() {
+        return cityX;
+    }
+
+    public float[] getCityY() {
+        return cityY;
+    }
+
+    public float getCityY(int c) {
+        return cityY[c];
+    }
+
+    public TourStore getTours() {
+        return tours;
+    }
+
+    public DistanceOracle getDistanceOracle() {
+        return oracle;
     }
 
     public int getWidth() {
@@ -269,12 +935,40 @@ public class TSProblem {
         return parameter.length;
     }
 
+    // Länge der Tour "t" aus dem Cache
+    public double getTourLength(int t) {
+        updateLengths();
+        return lengths[t];
+    }
+
+    public int getNumMoves() {
+        return move.length;
+    }
+
+    public Move getMove(int m) {
+        return move[m];
+    }
+
+    // Verfahren für die Startlösung in init() und randomize()
+    public int getConstruction() {
+        return construction;
+    }
+
+    public void setConstruction(int c) {
+        if (c < Construction.RANDOM || c > Construction.CLUSTER)
+            throw new IllegalArgumentException("Unbekanntes Verfahren: " + c);
+        construction = c;
+    }
+
     public float getTemperature() {
         return temperature;
     }
 
     public void setTemperature(float t) {
+        if (t == temperature)
+            return;
         temperature = t;
+        changed(SCHEDULE);
         fireStateChanged();
     }
 
@@ -283,14 +977,17 @@ public class TSProblem {
     }
 
     public void setCoolingRate(float c) {
+        if (c == coolingRate)
+            return;
         coolingRate = c;
+        changed(SCHEDULE);
         fireStateChanged();
     }
 
     public String toString() {
         String str = getClass().getName() +
-                     "[numTours="    + tour.length   +
-                     ",numCities="   + cities.size() +
+                     "[numTours="    + tours.getNumTours()   +
+                     ",numCities="   + numCities     +
                      ",width="       + width         +
                      ",height="      + height        +
                      ",numSteps="    + numSteps      +
@@ -298,8 +995,8 @@ public class TSProblem {
                      ",coolingRate=" + coolingRate;
         for (int i = 0; i < parameter.length; ++i)
             str += ','         + parameter[i].getName() +
-                   "[value="   + parameter[i].value     +
-                   ",optimum=" + parameter[i].optimum   + ']';
+                   "[value="   + parameter[i].getValue()   +
+                   ",optimum=" + parameter[i].getOptimum() + ']';
         return str + ']';
     }
 
@@ -307,93 +1004,374 @@ public class TSProblem {
      * Private Methoden
      */
 
-    // Stdte auf die Touren verteilen
+    // Startwert für Probleme ohne vorgegebenen Startwert
+    private static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
     private void distributeCities() {
-        Iterator i = cities.iterator();
-        for (int n = 0; i.hasNext(); ++n)
-            tour[n % tour.length].add(i.next());
+        if (construction != Construction.RANDOM) {
+            new Construction(cityX, cityY, tours.getNumTours(), random)
+                .build(construction, tours);
+            return;
+        }
+
+        // Städte in zufälliger Reihenfolge verteilen
+        int[] order = new int[numCities];
+        for (int i = 0; i < numCities; ++i)
+            order[i] = i;
+        for (int i = numCities - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1), c = order[i];
+            order[i] = order[j];
+            order[j] = c;
+        }
+        for (int n = 0; n < numCities; ++n)
+            tours.add(n % tours.getNumTours(), order[n]);
     }
 
-    // ChangeEvent "feuern"
+    // Aspekte als geändert markieren, die Parameterwerte (und bei
+    // INSTANCE die Optima) werden erst beim nächsten Lesen berechnet
+    private void changed(int aspects) {
+        pendingAspects |= aspects;
+        if ((aspects & (TOURS | INSTANCE)) != 0) {
+            for (int i = 0; i < parameter.length; ++i) {
+                parameter[i].valid = false;
+                if ((aspects & INSTANCE) != 0)
+                    parameter[i].optimumValid = false;
+            }
+        }
+    }
+
+    // ChangeEvent "feuern": ein gemeinsames Ereignis, jeder Listener
+    // höchstens einmal je Runde. Änderungen aus einem Listener heraus
+    // werden gesammelt und in einer weiteren Runde gemeldet.
     private void fireStateChanged() {
-        for (Iterator i = listeners.iterator(); i.hasNext(); )
-            ((ChangeListener)i.next()).stateChanged(new ChangeEvent(this));
+        if (firing)
+            return;
+        firing = true;
+        try {
+            while (pendingAspects != 0) {
+                firedAspects = pendingAspects;
+                pendingAspects = 0;
+                for (int i = 0; i < listeners.size(); ++i) {
+                    Subscription s = (Subscription)listeners.get(i);
+                    if ((s.aspects & firedAspects) != 0)
+                        s.listener.stateChanged(event);
+                }
+            }
+        } finally {
+            firedAspects = 0;
+            firing = false;
+        }
+    }
+
+    // Untere Schranke für die Gesamtlänge, beim ersten Lesen berechnet
+    private float getMinimalLength() {
+        if (!minimalLengthValid) {
+            minimalLengthTemp = minimalLength();
+            minimalLengthValid = true;
+        }
+        return minimalLengthTemp;
     }
 
     /*
-     * Hilfsmethoden fr die Parameter
+     * Hilfsmethoden für die Parameter
      */
 
-    private float tourLength(int t) {
-        if (tour[t].size() <= 1)
-            return 0;
-        float length = 0;
-        // Iterator statt get(), wegen LinkedList
-        Iterator i = tour[t].iterator();
-        Point city, firstCity = (Point)i.next();
-        city = firstCity;
-        while (i.hasNext()) {
-            Point nextCity = (Point)i.next();
-            length += (float)city.distance(nextCity);
-            city = nextCity;
+    /*
+     * Gecachte Tourlängen. optimize() hält sie selbst aktuell, andere
+     * Änderungen markieren die Tour nur, und sie wird vor der nächsten
+     * Benachrichtigung oder Optimierung einmal neu berechnet.
+     */
+
+    private void setLength(int t, double length) {
+        lengths[t] = length;
+        if (index != null)
+            index.set(t, length);
+    }
+
+    private void invalidateLength(int t) {
+        lengthDirty[t] = true;
+        anyLengthDirty = true;
+    }
+
+    private void invalidateLengths() {
+        for (int t = 0; t < lengthDirty.length; ++t)
+            lengthDirty[t] = true;
+        anyLengthDirty = true;
+    }
+
+    // Alle markierten Tourlängen neu berechnen
+    private void updateLengths() {
+        if (!anyLengthDirty)
+            return;
+        for (int t = 0; t < lengths.length; ++t) {
+            if (lengthDirty[t]) {
+                setLength(t, tourLength(t));
+                lengthDirty[t] = false;
+            }
         }
-        return (float)(length + firstCity.distance(city));
+        anyLengthDirty = false;
     }
 
-    // Untere Schranke der Gesamtlnge
-    private float minimalLength() {
-    	// Distanzenmatrix erzeugen
-    	float[][] distance = new float[cities.size()][cities.size()];
-    	for (int a = 0; a < cities.size(); ++a) {
-        	for (int b = a + 1; b < cities.size(); ++b) {
-        		Point pa = (Point)cities.get(a), pb = (Point)cities.get(b);
-        		distance[a][b] = distance[b][a] = (float)pa.distance(pb);
-        	}
-        }
-    	
-        // Alle Lngen des minimale Spannbaums in der Liste "lengthList" speichern
-    	List lengthList = new LinkedList();
-    	boolean[] tree = new boolean[cities.size()];
-    	tree[0] = true;
-        while (true) {
-            float length = 1e9f;
-            int node = -1;
-            for (int a = 0; a < tree.length; ++a) {
-                if (!tree[a]) continue;
-                for (int b = 0; b < tree.length; ++b) {
-                	if (tree[b]) continue;
-                	if (distance[a][b] < length) {
-                        length = distance[a][b];
-                        node = b;
-                    }               	
-                }
+    // Gecachte Tourlängen mit einer Neuberechnung vergleichen (Debug)
+    private void checkLengths() {
+        for (int i = 0; i < tours.getNumTours(); ++i) {
+            double length = tourLength(i);
+            if (Math.abs(length - lengths[i]) >
+                CHECK_EPSILON * Math.max(1, length)) {
+                System.err.println(getClass().getName() +
+                                   ": Tour " + i + " hat Länge " + length +
+                                   ", gecacht " + lengths[i]);
+                setLength(i, length);
             }
-            if (node < 0)
-            	break;
-            tree[node] = true;
-            lengthList.add(new Float(length));
         }
+    }
+
+    // Tourlänge vorläufig ändern, optimize() nimmt es bei Ablehnung zurück
+    private void changeLength(int t, double delta) {
+        undoTour[numUndo] = t;
+        undoLength[numUndo++] = lengths[t];
+        setLength(t, lengths[t] + delta);
+    }
 
-        /* 1. Die "NumTours - 1" lngsten Lngen nicht mitrechnen,
+    // Längenänderung, wenn die Stadt "c" aus ihrer Tour entfernt wird
+    private double removalDelta(int c) {
+        int prev = tours.prev(c), next = tours.next(c);
+        return distance(prev, next) - distance(prev, c) - distance(c, next);
+    }
+
+    /*
+     * Längenänderung, wenn die Stadt "c" (nach ihrer Entfernung) vor
+     * der Stadt "d" eingefügt wird. Ist "d" = -1, wird sie in eine
+     * leere Tour eingefügt.
+     */
+    private double insertionDelta(int c, int d) {
+        if (d < 0)
+            return 0;
+        int prev = tours.prev(d);
+        if (prev == c)
+            prev = tours.prev(c);
+        return distance(prev, c) + distance(c, d) - distance(prev, d);
+    }
+
+    // Länge der Tour "t" vollständig berechnen (in double wie der Cache)
+    private double tourLength(int t) {
+        if (tours.size(t) <= 1)
+            return 0;
+        double length = 0;
+        int first = tours.head(t), c = first;
+        do {
+            int next = tours.next(c);
+            length += distance(c, next);
+            c = next;
+        } while (c != first);
+        return length;
+    }
+
+    // Abstand zweier Städte. Als double, damit die Längenänderungen
+    // der Schritte ohne Rundung der float-Rechnung in den Cache kommen.
+    private double distance(int a, int b) {
+        return oracle.distance(a, b);
+    }
+
+    /*
+     * Untere Schranke der Gesamtlänge
+     *
+     * Grundlage ist der minimale Spannbaum der Städte. Liegt die
+     * Abstandsmatrix vollständig vor, wird Prim mit einem Schlüsselfeld
+     * in O(n²) verwendet, sonst der euklidische Spannbaum über einen
+     * 2-d-Baum in etwa O(n log n). Eine MappedMatrix ist immer
+     * vollständig, ihre Abstände sind nicht euklidisch.
+     */
+    private float minimalLength() {
+        float[] edges = (oracle.isDense() ? spanningTree() :
+                         new KdTree(cityX, cityY).spanningTree());
+
+        /* 1. Die "NumTours - 1" längsten Längen nicht mitrechnen,
          *    da die einzelnen Rundreisen unverbunden sind.
-         * 2. Die "NumTours" kleinsten Lngen doppelt rechnen,
+         * 2. Die "NumTours" kleinsten Längen doppelt rechnen,
          *    da die einzelnen Rundreisen geschlossen sind.
          */
 
         float length = 0;
-        Collections.sort(lengthList);
-        for (int i = lengthList.size() - tour.length; i >= 0; --i)
-            length += (i < tour.length ? 2 : 1) *
-                     ((Float)lengthList.get(i)).floatValue();
+        Arrays.sort(edges);
+        for (int i = edges.length - tours.getNumTours(); i >= 0; --i)
+            length += (i < tours.getNumTours() ? 2 : 1) * edges[i];
         return length;
     }
 
+    // Kantenlängen des minimalen Spannbaums (Prim)
+    private float[] spanningTree() {
+        float[] edges = new float[Math.max(0, numCities - 1)],
+                key = new float[numCities];
+        boolean[] tree = new boolean[numCities];
+        Arrays.fill(key, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < numCities; ++i) {
+            // Nächste Stadt außerhalb des Baums
+            int node = -1;
+            for (int c = 0; c < numCities; ++c) {
+                if (!tree[c] && (node < 0 || key[c] < key[node]))
+                    node = c;
+            }
+            tree[node] = true;
+            if (i > 0)
+                edges[i - 1] = key[node];
+            // Schlüssel aktualisieren
+            for (int c = 0; c < numCities; ++c) {
+                if (!tree[c]) {
+                    float d = oracle.distance(node, c);
+                    if (d < key[c])
+                        key[c] = d;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /*
+     * Die (abstrakte) Basisklasse aller Schritte. propose() trägt die
+     * Längenänderung vorläufig ein, apply() führt den Schritt aus.
+     */
+
+    public abstract class Move {
+        private float weight;
+        private long  numAttempts, numAccepted;
+
+        protected Move(float w) {
+            weight = w;
+        }
+
+        public float getWeight() {
+            return weight;
+        }
+
+        // Relative Häufigkeit, 0 schaltet den Schritt ab
+        public void setWeight(float w) {
+            if (w < 0)
+                throw new IllegalArgumentException("Negatives Gewicht");
+            weight = w;
+        }
+
+        public long getNumAttempts() {
+            return numAttempts;
+        }
+
+        public long getNumAccepted() {
+            return numAccepted;
+        }
+
+        public float getAcceptRate() {
+            return (numAttempts == 0 ? 0 : (float)numAccepted / numAttempts);
+        }
+
+        public abstract String  getName();
+        // false, wenn an der gewählten Stelle kein Schritt möglich ist
+        public abstract boolean propose();
+        public abstract void    apply();
+    } // public class Move
+
+    /*
+     * Die Wege s1..e1 der Tour A und s2..e2 der Tour B tauschen ihre
+     * Touren, s1 folgt danach auf p2 = prev(s2) und s2 auf p1. Die
+     * Wege sind 1 bis "maxLength" Städte lang, beide Touren behalten
+     * mindestens eine Stadt. Nur die beiden Touren werden neu bewertet.
+     */
+    private class Exchange extends Move {
+        private final String name;
+        private final int    maxLength;
+        private int          before1, first1, last1,
+                             before2, first2, last2;
+
+        public Exchange(String name, int maxLength) {
+            super(0);
+            this.name = name;
+            this.maxLength = maxLength;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean propose() {
+            if (numCandidates > 0) {
+                // Weg 1 hinter einen nahen Nachbarn in einer anderen Tour
+                first1 = random.nextInt(numCities);
+                before2 = candidates[first1 * numCandidates +
+                                     random.nextInt(numCandidates)];
+                first2 = tours.next(before2);
+            } else {
+                int numTours = tours.getNumTours();
+                if (numTours < 2)
+                    return false;
+                int tourA = random.nextInt(numTours),
+                    tourB = random.nextInt(numTours - 1);
+                if (tourB >= tourA)
+                    ++tourB;
+                if (tours.size(tourA) < 2 || tours.size(tourB) < 2)
+                    return false;
+                first1 = tours.member(tourA, random.nextInt(tours.size(tourA)));
+                first2 = tours.member(tourB, random.nextInt(tours.size(tourB)));
+                before2 = tours.prev(first2);
+            }
+            int tourA = tours.tourOf(first1), tourB = tours.tourOf(first2);
+            before1 = tours.prev(first1);
+            if (tourA == tourB || before1 == first1 || before2 == first2)
+                return false;
+
+            // Wege bilden und ihre inneren Längen bestimmen
+            double inner1 = 0, inner2 = 0;
+            last1 = first1;
+            for (int i = random.nextInt(maxLength); i > 0; --i) {
+                int next = tours.next(last1);
+                if (next == before1)
+                    break;
+                inner1 += distance(last1, next);
+                last1 = next;
+            }
+            last2 = first2;
+            for (int i = random.nextInt(maxLength); i > 0; --i) {
+                int next = tours.next(last2);
+                if (next == before2)
+                    break;
+                inner2 += distance(last2, next);
+                last2 = next;
+            }
+
+            int after1 = tours.next(last1), after2 = tours.next(last2);
+            double deltaA = distance(before1, first2) + inner2 + distance(last2, after1) -
+                            distance(before1, first1) - inner1 - distance(last1, after1),
+                   deltaB = distance(before2, first1) + inner1 + distance(last1, after2) -
+                            distance(before2, first2) - inner2 - distance(last2, after2);
+            changeLength(tourA, deltaA);
+            changeLength(tourB, deltaB);
+            return true;
+        }
+
+        public void apply() {
+            tours.moveSegment(first1, last1, before2, false);
+            tours.moveSegment(first2, last2, before1, false);
+        }
+    } // private class Exchange
+
+    // Listener mit der Maske seiner Aspekte
+    private static class Subscription {
+        private final ChangeListener listener;
+        private final int aspects;
+
+        public Subscription(ChangeListener listener, int aspects) {
+            this.listener = listener;
+            this.aspects = aspects;
+        }
+    } // private static class Subscription
+
     /*
      * Die (abstrakte) Basisklasse aller Parameter
      */
 
-    public abstract class Parameter implements ChangeListener {
-        private float value, optimum;
+    public abstract class Parameter {
+        private float   value, optimum;
+        private boolean valid, optimumValid;   // Sonst beim Lesen berechnen
 
         /*
         private void init() {
@@ -402,20 +1380,29 @@ public class TSProblem {
         */
 
         public float getValue() {
+            if (!valid) {
+                updateLengths();
+                value = calcValue();
+                valid = true;
+            }
             return value;
         }
 
+        public float getOptimum() {
+            if (!optimumValid) {
+                optimum = calcOptimum();
+                optimumValid = true;
+            }
+            return optimum;
+        }
+
         public float getDifference() {
+            float value = getValue(), optimum = getOptimum();
             if (value == optimum)
                 return 0;
             return ((value / optimum) - 1);
         }
 
-        public void stateChanged(ChangeEvent e) {
-            value = calcValue();
-            optimum = calcOptimum();
-        }
-
         public abstract String getName();
         public abstract float  calcValue();
         public abstract float  calcOptimum();
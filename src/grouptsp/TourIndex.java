@@ -0,0 +1,246 @@
+/*
+ * TourIndex.java - Inkrementelle Kennzahlen über die Tourlängen
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse TourIndex
+ *
+ * Hält die Längen von k Touren so, dass Summe, Maximum und die Summe
+ * der Abweichungen vom Mittelwert nach jeder Änderung in O(log k)
+ * bereitstehen, statt sie in jedem Schritt in O(k) neu zu berechnen:
+ *
+ * - Summe und Maximum: Segmentbaum in einem Feld, die Blätter
+ *   beginnen bei "leaves", Knoten i hat die Kinder 2i und 2i + 1.
+ * - Abweichungen: Treap, geordnet nach (Länge, Tour), mit Anzahl und
+ *   Summe je Teilbaum. Der Mittelwert teilt die Touren in kürzere und
+ *   längere, für beide Teile folgen die Abweichungen aus Anzahl und
+ *   Summe.
+ *
+ * Der Treap wird erst beim ersten Aufruf von getDeviation() aufgebaut
+ * und dann nur dort nachgeführt. Wird nur Summe oder Maximum gebraucht,
+ * kostet er nichts, und eine Tour, die vor der nächsten Abfrage wieder
+ * ihre alte Länge hat (verworfener Schritt), wird gar nicht umgehängt.
+ *
+ * Jeder Knoten des Treaps ist eine Tour, es wird nichts angelegt.
+ * Die Prioritäten werden aus der Tournummer gestreut, damit der
+ * Zufallsstrom des Problems unberührt bleibt.
+ */
+public class TourIndex {
+
+    /*
+     * Private Felder
+     */
+
+    private final int    numTours, leaves;
+    private final double length[];          // Aktuelle Längen
+    private final double maxTree[], sumTree[];  // Segmentbaum
+
+    private final double key[], sum[];      // Länge im Treap, Summe im Teilbaum
+    private final int    prio[], left[], right[], count[];
+    private int          root, splitLeft, splitRight;
+    private boolean      sorted;            // Treap aufgebaut?
+    private final int    pending[];         // Noch nicht umgehängte Touren
+    private final boolean isPending[];
+    private int          numPending;
+
+    /*
+     * Konstruktor
+     */
+
+    public TourIndex(double[] lengths) {
+        numTours = lengths.length;
+        int p = 1;
+        while (p < numTours)
+            p *= 2;
+        leaves = p;
+        maxTree = new double[2 * p];
+        sumTree = new double[2 * p];
+        for (int i = 0; i < maxTree.length; ++i)
+            maxTree[i] = Double.NEGATIVE_INFINITY;
+
+        length = lengths.clone();
+        pending = new int[numTours];
+        isPending = new boolean[numTours];
+        key = new double[numTours];
+        sum = new double[numTours];
+        prio = new int[numTours];
+        left = new int[numTours];
+        right = new int[numTours];
+        count = new int[numTours];
+        for (int t = 0; t < numTours; ++t)
+            maxTree[leaves + t] = sumTree[leaves + t] = lengths[t];
+        for (int i = leaves - 1; i > 0; --i) {
+            maxTree[i] = Math.max(maxTree[2 * i], maxTree[2 * i + 1]);
+            sumTree[i] = sumTree[2 * i] + sumTree[2 * i + 1];
+        }
+    }
+
+    /*
+     * Änderung und Abfragen
+     */
+
+    // Neue Länge der Tour "t", Aufwand O(log k)
+    public void set(int t, double l) {
+        if (length[t] == l)
+            return;
+        length[t] = l;
+        if (sorted && !isPending[t]) {
+            isPending[t] = true;
+            pending[numPending++] = t;
+        }
+
+        int i = leaves + t;
+        maxTree[i] = sumTree[i] = l;
+        for (i /= 2; i > 0; i /= 2) {
+            maxTree[i] = Math.max(maxTree[2 * i], maxTree[2 * i + 1]);
+            sumTree[i] = sumTree[2 * i] + sumTree[2 * i + 1];
+        }
+    }
+
+    public double getSum() {
+        return (numTours == 0 ? 0 : sumTree[1]);
+    }
+
+    public double getMax() {
+        return (numTours == 0 ? 0 : maxTree[1]);
+    }
+
+    // Summe der Beträge |Länge - Mittelwert| über alle Touren
+    public double getDeviation() {
+        if (numTours == 0)
+            return 0;
+        update();
+        double total = sum[root], average = total / numTours;
+
+        // Anzahl und Summe der Touren unter dem Mittelwert
+        double belowSum = 0;
+        int belowCount = 0;
+        for (int n = root; n >= 0; ) {
+            if (key[n] < average) {
+                if (left[n] >= 0) {
+                    belowCount += count[left[n]];
+                    belowSum += sum[left[n]];
+                }
+                ++belowCount;
+                belowSum += key[n];
+                n = right[n];
+            } else
+                n = left[n];
+        }
+        return (average * belowCount - belowSum) +
+               (total - belowSum - average * (numTours - belowCount));
+    }
+
+    /*
+     * Treap
+     */
+
+    // Geänderte Touren neu einsortieren
+    private void update() {
+        if (!sorted) {
+            root = -1;
+            for (int t = 0; t < numTours; ++t) {
+                int h = t * 0x9E3779B9;
+                prio[t] = h ^ (h >>> 16);
+                key[t] = length[t];
+                root = insert(root, t);
+            }
+            sorted = true;
+            return;
+        }
+        for (int i = 0; i < numPending; ++i) {
+            int t = pending[i];
+            isPending[t] = false;
+            if (key[t] != length[t]) {
+                root = remove(root, t);
+                key[t] = length[t];
+                root = insert(root, t);
+            }
+        }
+        numPending = 0;
+    }
+
+    // Steht Tour "a" vor Tour "b"?
+    private boolean less(int a, int b) {
+        return (key[a] < key[b] || (key[a] == key[b] && a < b));
+    }
+
+    // Anzahl und Summe aus den Kindern berechnen
+    private void pull(int n) {
+        int c = 1;
+        double s = key[n];
+        if (left[n] >= 0) {
+            c += count[left[n]];
+            s += sum[left[n]];
+        }
+        if (right[n] >= 0) {
+            c += count[right[n]];
+            s += sum[right[n]];
+        }
+        count[n] = c;
+        sum[n] = s;
+    }
+
+    private int insert(int n, int t) {
+        if (n < 0 || prio[t] > prio[n]) {
+            split(n, t);
+            left[t] = splitLeft;
+            right[t] = splitRight;
+            pull(t);
+            return t;
+        }
+        if (less(t, n))
+            left[n] = insert(left[n], t);
+        else
+            right[n] = insert(right[n], t);
+        pull(n);
+        return n;
+    }
+
+    private int remove(int n, int t) {
+        if (n == t)
+            return merge(left[n], right[n]);
+        if (less(t, n))
+            left[n] = remove(left[n], t);
+        else
+            right[n] = remove(right[n], t);
+        pull(n);
+        return n;
+    }
+
+    // Teilbaum "n" in die Touren vor "t" (splitLeft) und nach "t" teilen
+    private void split(int n, int t) {
+        if (n < 0) {
+            splitLeft = splitRight = -1;
+            return;
+        }
+        if (less(n, t)) {
+            split(right[n], t);
+            right[n] = splitLeft;
+            splitLeft = n;
+        } else {
+            split(left[n], t);
+            left[n] = splitRight;
+            splitRight = n;
+        }
+        pull(n);
+    }
+
+    private int merge(int a, int b) {
+        if (a < 0)
+            return b;
+        if (b < 0)
+            return a;
+        if (prio[a] > prio[b]) {
+            right[a] = merge(right[a], b);
+            pull(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        pull(b);
+        return b;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * TourStore.java - Kompakte Speicherung der Rundreisen
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+/*
+ * Klasse TourStore
+ *
+ * Die Rundreisen werden als doppelt verkettete Ringe über den
+ * Städteindizes gespeichert (Felder "next" und "prev"). Damit sind
+ * Nachbarabfragen, Einfügen und Entfernen in O(1) möglich.
+ *
+ * Zusätzlich hält jede Tour ein ungeordnetes Feld ihrer Städte,
+ * damit zufällige Städte einer Tour in O(1) gezogen werden können.
+ * Nach dem Aufbau werden keine Objekte mehr erzeugt.
+ */
+public class TourStore {
+
+    /*
+     * Private Felder
+     */
+
+    private final int next[], prev[],  // Ring
+                      tourOf[],        // Tour der Stadt (-1 = keine)
+                      slot[];          // Index in "member"
+    private final int head[],          // Startstadt der Tour (-1 = leer)
+                      size[];
+    private final int member[][];      // Ungeordnete Städte der Tour
+
+    /*
+     * Konstruktor
+     */
+
+    public TourStore(int numTours, int numCities) {
+        next = new int[numCities];
+        prev = new int[numCities];
+        tourOf = new int[numCities];
+        slot = new int[numCities];
+        head = new int[numTours];
+        size = new int[numTours];
+        member = new int[numTours][];
+        int capacity = Math.max(1, numCities / numTours + 1);
+        for (int t = 0; t < numTours; ++t)
+            member[t] = new int[capacity];
+        clear();
+    }
+
+    // Kopie mit eigenen Feldern
+    public TourStore(TourStore other) {
+        next = other.next.clone();
+        prev = other.prev.clone();
+        tourOf = other.tourOf.clone();
+        slot = other.slot.clone();
+        head = other.head.clone();
+        size = other.size.clone();
+        member = new int[other.member.length][];
+        for (int t = 0; t < member.length; ++t)
+            member[t] = other.member[t].clone();
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public int getNumTours() {
+        return head.length;
+    }
+
+    public int getNumCities() {
+        return next.length;
+    }
+
+    public int size(int t) {
+        return size[t];
+    }
+
+    public int head(int t) {
+        return head[t];
+    }
+
+    public int next(int c) {
+        return next[c];
+    }
+
+    public int prev(int c) {
+        return prev[c];
+    }
+
+    public int tourOf(int c) {
+        return tourOf[c];
+    }
+
+    // i-te Stadt der Tour in beliebiger (nicht Tour-)Reihenfolge
+    public int member(int t, int i) {
+        return member[t][i];
+    }
+
+    // Städte der Tour in Tourreihenfolge nach "out" kopieren
+    public int toArray(int t, int[] out) {
+        int c = head[t];
+        for (int i = 0; i < size[t]; ++i) {
+            out[i] = c;
+            c = next[c];
+        }
+        return size[t];
+    }
+
+    /*
+     * Veränderung der Touren
+     */
+
+    // Alle Touren leeren
+    public void clear() {
+        for (int t = 0; t < head.length; ++t) {
+            head[t] = -1;
+            size[t] = 0;
+        }
+        for (int c = 0; c < next.length; ++c) {
+            next[c] = prev[c] = c;
+            tourOf[c] = -1;
+        }
+    }
+
+    // Stadt "c" am Ende der Tour "t" anhängen
+    public void add(int t, int c) {
+        if (head[t] < 0) {
+            next[c] = prev[c] = c;
+            head[t] = c;
+            addMember(t, c);
+        } else
+            insertBefore(c, head[t]);
+    }
+
+    // Stadt "c" vor der Stadt "d" (in deren Tour) einfügen
+    public void insertBefore(int c, int d) {
+        insertAfter(c, prev[d]);
+    }
+
+    // Stadt "c" nach der Stadt "d" (in deren Tour) einfügen
+    public void insertAfter(int c, int d) {
+        int n = next[d];
+        prev[c] = d;
+        next[c] = n;
+        next[d] = c;
+        prev[n] = c;
+        addMember(tourOf[d], c);
+    }
+
+    // Stadt "c" aus ihrer Tour entfernen
+    public void remove(int c) {
+        int t = tourOf[c];
+        if (size[t] == 1)
+            head[t] = -1;
+        else {
+            if (head[t] == c)
+                head[t] = next[c];
+            next[prev[c]] = next[c];
+            prev[next[c]] = prev[c];
+        }
+        next[c] = prev[c] = c;
+        removeMember(c);
+    }
+
+    /*
+     * Den Weg "a" bis "b" (in Tourrichtung) umdrehen.
+     * Aufwand O(Länge des Wegs).
+     */
+    public void reverse(int a, int b) {
+        if (a == b)
+            return;
+        int before = prev[a], after = next[b];
+        // Ganze Tour umdrehen?
+        boolean whole = (after == a);
+        int c = a;
+        while (true) {
+            int n = next[c];
+            next[c] = prev[c];
+            prev[c] = n;
+            if (c == b)
+                break;
+            c = n;
+        }
+        if (whole)
+            return;
+        next[before] = b;
+        prev[b] = before;
+        next[a] = after;
+        prev[after] = a;
+    }
+
+    /*
+     * 2-opt: Die Kanten (a, next(a)) und (b, next(b)) einer Tour durch
+     * (a, b) und (next(a), next(b)) ersetzen. Beide Wege dazwischen
+     * ergeben die gleiche Tour, umgedreht wird der kürzere. Dazu wird
+     * auf beiden gleichzeitig gelaufen, Aufwand O(Länge des kürzeren).
+     */
+    public void twoOpt(int a, int b) {
+        int nextA = next[a], nextB = next[b];
+        int x = nextA, y = nextB;
+        while (x != b && y != a) {
+            x = next[x];
+            y = next[y];
+        }
+        if (x == b)
+            reverse(nextA, b);
+        else
+            reverse(nextB, a);
+    }
+
+    /*
+     * Den Weg "a" bis "b" (in Tourrichtung) aus seiner Tour lösen und
+     * nach der Stadt "d" einfügen, wahlweise umgedreht. "d" darf nicht
+     * im Weg liegen, aber in einer anderen Tour. Aufwand O(Länge des Wegs).
+     */
+    public void moveSegment(int a, int b, int d, boolean reversed) {
+        int from = tourOf[a], to = tourOf[d];
+
+        // Weg aus dem Ring lösen
+        int before = prev[a], after = next[b];
+        if (after == a)
+            head[from] = -1;
+        else {
+            if (head[from] >= 0 && inPath(head[from], a, b))
+                head[from] = after;
+            next[before] = after;
+            prev[after] = before;
+        }
+
+        // Zugehörigkeit anpassen
+        if (from != to) {
+            int c = a;
+            while (true) {
+                removeMember(c);
+                addMember(to, c);
+                if (c == b)
+                    break;
+                c = next[c];
+            }
+        }
+
+        // Weg nach "d" einhängen
+        int first = a, last = b;
+        if (reversed) {
+            int c = a;
+            while (true) {
+                int n = next[c];
+                next[c] = prev[c];
+                prev[c] = n;
+                if (c == b)
+                    break;
+                c = n;
+            }
+            first = b;
+            last = a;
+        }
+        int n = next[d];
+        next[d] = first;
+        prev[first] = d;
+        next[last] = n;
+        prev[n] = last;
+    }
+
+    /*
+     * Private Methoden
+     */
+
+    // Liegt "c" auf dem Weg "a" bis "b"?
+    private boolean inPath(int c, int a, int b) {
+        for (int x = a; ; x = next[x]) {
+            if (x == c)
+                return true;
+            if (x == b)
+                return false;
+        }
+    }
+
+    private void addMember(int t, int c) {
+        if (size[t] == member[t].length) {
+            int[] grown = new int[2 * size[t]];
+            System.arraycopy(member[t], 0, grown, 0, size[t]);
+            member[t] = grown;
+        }
+        tourOf[c] = t;
+        slot[c] = size[t];
+        member[t][size[t]++] = c;
+        if (head[t] < 0)
+            head[t] = c;
+    }
+
+    private void removeMember(int c) {
+        int t = tourOf[c];
+        int last = member[t][--size[t]];
+        member[t][slot[c]] = last;
+        slot[last] = slot[c];
+        tourOf[c] = -1;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * TsplibReader.java - Karten im TSPLIB-Format laden
+ * Geschrieben von Daniel Mendler
+ */
+
+package grouptsp;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Klasse TsplibReader
+ *
+ * Liest eine .tsp-Datei mit EDGE_WEIGHT_TYPE EUC_2D, CEIL_2D, ATT oder
+ * GEO. Die Datei wird mit NIO in den Speicher abgebildet, nur die
+ * wenigen Kopfzeilen werden zu Strings. NODE_COORD_SECTION wird Byte
+ * für Byte direkt in Felder aus double gelesen.
+ *
+ * Der Löser rechnet euklidisch, deshalb werden die Koordinaten so
+ * umgerechnet, dass euklidische Abstände den TSPLIB-Abständen (bis auf
+ * deren Rundung) entsprechen:
+ *
+ * - EUC_2D, CEIL_2D: unverändert
+ * - ATT: durch sqrt(10) geteilt
+ * - GEO: Grad.Minuten in Bogenmaß, dann mit einer Zylinderprojektion
+ *   um die mittlere Breite auf Kilometer abgebildet (gut für Karten
+ *   bis zu einigen hundert Kilometern)
+ *
+ * Danach wird so verschoben, dass die kleinsten Koordinaten 0 sind.
+ * getLength() rechnet eine Tour mit der genauen TSPLIB-Formel nach.
+ */
+public class TsplibReader {
+
+    /*
+     * Abstandsarten
+     */
+
+    public static final int EUC_2D  = 0,
+                            CEIL_2D = 1,
+                            ATT     = 2,
+                            GEO     = 3;
+
+    private static final String TYPES[] = { "EUC_2D", "CEIL_2D", "ATT", "GEO" };
+
+    // Erdradius und PI der TSPLIB
+    private static final double RRR = 6378.388,
+                                GEO_PI = 3.141592;
+
+    /*
+     * Private Felder
+     */
+
+    private final String file;
+    private String name;
+    private int    type = -1, dimension = -1;
+    private double fileX[], fileY[];         // Koordinaten aus der Datei
+    private float  x[], y[];                 // Umgerechnet für den Löser
+
+    private MappedByteBuffer buffer;
+    private int pos, limit, line;
+
+    /*
+     * Konstruktor: Datei sofort lesen
+     */
+
+    public TsplibReader(String file) throws IOException {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + ": Datei zu groß");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        pos = 0;
+        limit = buffer.limit();
+        line = 1;
+        try {
+            readHeader();
+            readCoordinates();
+        } finally {
+            buffer = null;
+        }
+        transform();
+    }
+
+    /*
+     * Zugriffsmethoden
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getTypeName() {
+        return TYPES[type];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    // Umgerechnete Koordinaten (kleinste Koordinate 0)
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    // Problem mit "numTours" Touren über diesen Städten
+    public TSProblem createProblem(int numTours, long seed) {
+        return new TSProblem(numTours, x, y, seed);
+    }
+
+    // Länge der geschlossenen Tour nach der TSPLIB-Formel
+    public long getLength(int[] tour, int size) {
+        long length = 0;
+        for (int i = 0; i < size && size > 1; ++i)
+            length += distance(tour[i], tour[(i + 1) % size]);
+        return length;
+    }
+
+    // TSPLIB-Abstand zweier Städte (ganzzahlig)
+    public int distance(int a, int b) {
+        double dx = fileX[a] - fileX[b], dy = fileY[a] - fileY[b];
+        switch (type) {
+        case EUC_2D:
+            return (int)(Math.sqrt(dx * dx + dy * dy) + 0.5);
+        case CEIL_2D:
+            return (int)Math.ceil(Math.sqrt(dx * dx + dy * dy));
+        case ATT: {
+            double r = Math.sqrt((dx * dx + dy * dy) / 10);
+            int t = (int)(r + 0.5);
+            return (t < r ? t + 1 : t);
+        }
+        default: {
+            double latA = geo(fileX[a]), lonA = geo(fileY[a]),
+                   latB = geo(fileX[b]), lonB = geo(fileY[b]);
+            double q1 = Math.cos(lonA - lonB),
+                   q2 = Math.cos(latA - latB),
+                   q3 = Math.cos(latA + latB);
+            return (int)(RRR * Math.acos(0.5 * ((1 + q1) * q2 - (1 - q1) * q3)) + 1);
+        }
+        }
+    }
+
+    /*
+     * Kopf: "SCHLÜSSEL : WERT" bis NODE_COORD_SECTION
+     */
+
+    private void readHeader() throws IOException {
+        for (;;) {
+            if (pos < limit && buffer.get(pos) == '\n') {
+                ++pos;
+                ++line;
+            }
+            if (pos >= limit)
+                throw error("NODE_COORD_SECTION fehlt");
+            String text = readLine().trim();
+            if (text.length() == 0)
+                continue;
+            int colon = text.indexOf(':');
+            String key = (colon >= 0 ? text.substring(0, colon) : text).trim(),
+                   value = (colon >= 0 ? text.substring(colon + 1).trim() : "");
+
+            if (key.equals("NODE_COORD_SECTION"))
+                break;
+            else if (key.equals("NAME"))
+                name = value;
+            else if (key.equals("TYPE")) {
+                if (!value.equals("TSP"))
+                    throw error("Nur TYPE TSP wird unterstützt: " + value);
+            } else if (key.equals("DIMENSION")) {
+                try {
+                    dimension = Integer.parseInt(value);
+                } catch (NumberFormatException ex) {
+                    throw error("Ungültige DIMENSION: " + value);
+                }
+            } else if (key.equals("EDGE_WEIGHT_TYPE")) {
+                for (int i = 0; i < TYPES.length; ++i) {
+                    if (TYPES[i].equals(value))
+                        type = i;
+                }
+                if (type < 0)
+                    throw error("Nicht unterstützter EDGE_WEIGHT_TYPE: " + value);
+            } else if (key.equals("EOF") || key.endsWith("_SECTION"))
+                throw error("NODE_COORD_SECTION erwartet: " + key);
+            // COMMENT, NODE_COORD_TYPE, DISPLAY_DATA_TYPE: überspringen
+        }
+        if (dimension < 1)
+            throw error("DIMENSION fehlt");
+        if (type < 0)
+            throw error("EDGE_WEIGHT_TYPE fehlt");
+    }
+
+    // Eine Kopfzeile als String, "pos" bleibt auf dem Zeilenende
+    private String readLine() {
+        int start = pos;
+        while (pos < limit && buffer.get(pos) != '\n')
+            ++pos;
+        byte[] bytes = new byte[pos - start];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = buffer.get(start + i);
+        return new String(bytes, 0, bytes.length).replace('\r', ' ');
+    }
+
+    /*
+     * NODE_COORD_SECTION: "Nummer x y" je Stadt, ohne Strings
+     */
+
+    private void readCoordinates() throws IOException {
+        fileX = new double[dimension];
+        fileY = new double[dimension];
+        boolean[] seen = new boolean[dimension];
+        for (int i = 0; i < dimension; ++i) {
+            skipSpace();
+            if (pos >= limit || !isNumberStart(buffer.get(pos)))
+                throw error((dimension - i) + " Städte fehlen");
+            double id = readNumber();
+            int c = (int)id - 1;
+            if (c != id - 1 || c < 0 || c >= dimension || seen[c])
+                throw error("Ungültige Stadtnummer: " + (long)id);
+            seen[c] = true;
+            skipSpace();
+            fileX[c] = readNumber();
+            skipSpace();
+            fileY[c] = readNumber();
+        }
+    }
+
+    // Leerzeichen und Zeilenenden überspringen
+    private void skipSpace() {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '\n')
+                ++line;
+            else if (b != ' ' && b != '\t' && b != '\r')
+                return;
+            ++pos;
+        }
+    }
+
+    private static boolean isNumberStart(byte b) {
+        return ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.');
+    }
+
+    // Zahl wie "-12", "3.25" oder "1.5e+06" lesen
+    private double readNumber() throws IOException {
+        int start = pos;
+        boolean negative = false;
+        if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+            negative = (buffer.get(pos++) == '-');
+
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean fraction = false;
+        for (; pos < limit; ++pos) {
+            byte b = buffer.get(pos);
+            if (b >= '0' && b <= '9') {
+                // Nach 18 Stellen nur noch den Exponenten zählen
+                if (mantissa < 100000000000000000L) {
+                    mantissa = 10 * mantissa + (b - '0');
+                    if (fraction)
+                        --exponent;
+                } else if (!fraction)
+                    ++exponent;
+                ++digits;
+            } else if (b == '.' && !fraction)
+                fraction = true;
+            else
+                break;
+        }
+        if (digits == 0)
+            throw error("Zahl erwartet");
+
+        if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+            ++pos;
+            boolean negativeExponent = false;
+            if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+'))
+                negativeExponent = (buffer.get(pos++) == '-');
+            int e = 0, expDigits = 0;
+            for (; pos < limit; ++pos, ++expDigits) {
+                byte b = buffer.get(pos);
+                if (b < '0' || b > '9')
+                    break;
+                e = Math.min(10 * e + (b - '0'), 1000);
+            }
+            if (expDigits == 0)
+                throw error("Exponent erwartet");
+            exponent += (negativeExponent ? -e : e);
+        }
+        if (pos < limit && !isSpace(buffer.get(pos)))
+            throw error("Ungültige Zahl ab Zeichen " + (pos - start + 1));
+
+        double value = (exponent >= 0 ? mantissa * Math.pow(10, exponent) :
+                        mantissa / Math.pow(10, -exponent));
+        return (negative ? -value : value);
+    }
+
+    private static boolean isSpace(byte b) {
+        return (b == ' ' || b == '\t' || b == '\r' || b == '\n');
+    }
+
+    private IOException error(String message) {
+        return new IOException(file + ':' + line + ": " + message);
+    }
+
+    /*
+     * Koordinaten für den Löser umrechnen
+     */
+
+    private void transform() {
+        int n = dimension;
+        x = new float[n];
+        y = new float[n];
+        if (type == GEO) {
+            // x = Länge, y = Breite nach Norden oben
+            double meanLat = 0;
+            for (int i = 0; i < n; ++i)
+                meanLat += geo(fileX[i]);
+            double scale = RRR * Math.cos(meanLat / n);
+            for (int i = 0; i < n; ++i) {
+                x[i] = (float)(scale * geo(fileY[i]));
+                y[i] = (float)(-RRR * geo(fileX[i]));
+            }
+        } else {
+            double factor = (type == ATT ? 1 / Math.sqrt(10) : 1);
+            for (int i = 0; i < n; ++i) {
+                x[i] = (float)(fileX[i] * factor);
+                y[i] = (float)(fileY[i] * factor);
+            }
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        for (int i = 0; i < n; ++i) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+        }
+        for (int i = 0; i < n; ++i) {
+            x[i] -= minX;
+            y[i] -= minY;
+        }
+    }
+
+    // TSPLIB-Grad.Minuten in Bogenmaß (mit dem PI und dem Abschneiden
+    // der Referenzimplementierung, sonst weichen die Längen ab)
+    private static double geo(double value) {
+        int degrees = (int)value;
+        double minutes = value - degrees;
+        return GEO_PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Util.java - Gemeinsame Hilfsklasse fr beide Aufgaben
+ * Util.java - Gemeinsame Hilfsklasse für beide Aufgaben
  * Geschrieben von Daniel Mendler
  */
 
@@ -118,7 +118,7 @@ public class Util {
     }
     */
 
-    // Spinner fr Kommawerte
+    // Spinner für Kommawerte
     public static JSpinner newSpinner(float value, float min, float max,
                                       float step, String format,
                                       ChangeListener listener, String tip) {
@@ -134,7 +134,7 @@ public class Util {
         return spinner;
     }
     
-    // Spinner fr ganzzahlige Werte
+    // Spinner für ganzzahlige Werte
     public static JSpinner newSpinner(int value, int min, int max, int step,
                                       ChangeListener listener, String tip) {
         JSpinner spinner =
@@ -170,7 +170,7 @@ public class Util {
     }
 
     /*
-    // Menelement
+    // Menüelement
     public static JMenuItem newMenuItem(String title,
                                         ActionListener listener) {
         JMenuItem item = new JMenuItem(title);
@@ -192,7 +192,7 @@ public class Util {
 
     /*
      * Hilfsfunktionen zum Erstellen von GridBagConstraints
-     * fr den Layout-Manager GridBagLayout.
+     * für den Layout-Manager GridBagLayout.
      */
 
     private static GridBagConstraints newGBC(int x, int y, int w, int h,